@@ -0,0 +1,124 @@
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.HtmlExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleHtmlExporterOutput;
+
+import benchmarks.DogShow;
+
+/**
+ * Реализация {@link DogShow}: лежит в пакете по умолчанию, чтобы обращаться
+ * к классам приложения напрямую.
+ */
+public class DogShowBenchmarkAccess implements DogShow {
+    private static final String[] NAMES = {"Дина", "Тайсон", "Арчи", "Мухтар", "Рекс", "Белка", "Джек", "Лайма",
+            "Граф", "Найда", "Бублик", "Чара", "Барон", "Альма", "Кузя", "Жужа", "Гром", "Ника", "Тузик", "Ричи"};
+    private static final String[] BREEDS = {"Ротвейлер", "Мопс", "Далматин", "Шарпей", "Овчарка", "Такса",
+            "Пудель", "Бигль", "Хаски", "Корги", "Доберман", "Лабрадор", "Спаниель", "Чихуахуа", "Боксёр"};
+    private static final String[] SURNAMES = {"Попова", "Кузнецова", "Васильева", "Филиппов", "Смирнов",
+            "Иванова", "Петров", "Соколова", "Морозов", "Волкова", "Зайцев", "Лебедева", "Новиков", "Козлова"};
+    private static final String[] JUDGES = {"Сидоров С.С.", "Михайлов М.М.", "Павлов П.П.", "Ильин И.И.",
+            "Орлова О.О.", "Егоров Е.Е.", "Фролова Ф.Ф.", "Тихонов Т.Т."};
+    private static final String[] AWARDS = {"За отвагу", "Самый дружелюбный", "Лучшая окраска", "Самый красивый",
+            "Лучший в породе", "Лучший щенок", "Без награды"};
+    private static final String INITIALS = "АБВГДЕЖЗИКЛМНОПРСТ";
+
+    @Override
+    public void generate(Path xml, int dogs, long seed) throws Exception {
+        Random random = new Random(seed);
+        // Клички и владельцы повторяются, как на настоящей выставке, но различных значений
+        // становится больше с ростом числа собак — это важно для словаря и индекса поиска
+        int nameVariants = Math.max(1, dogs / 20);
+        int ownerVariants = Math.max(1, dogs / 5);
+        try (DogXmlWriter writer = new DogXmlWriter(Files.newBufferedWriter(xml, StandardCharsets.UTF_8))) {
+            writer.writeStart();
+            for (int i = 0; i < dogs; i++) {
+                int nameVariant = random.nextInt(nameVariants);
+                String name = NAMES[nameVariant % NAMES.length]
+                        + (nameVariant < NAMES.length ? "" : " " + (nameVariant / NAMES.length + 1));
+                int owner = random.nextInt(ownerVariants);
+                String ownerName = SURNAMES[owner % SURNAMES.length] + " "
+                        + INITIALS.charAt(owner / SURNAMES.length % INITIALS.length()) + "."
+                        + INITIALS.charAt(owner / SURNAMES.length / INITIALS.length() % INITIALS.length()) + "."
+                        + (owner < SURNAMES.length * INITIALS.length() * INITIALS.length()
+                        ? "" : " (" + owner + ")");
+                writer.writeDog(name, BREEDS[random.nextInt(BREEDS.length)], ownerName,
+                        JUDGES[random.nextInt(JUDGES.length)], AWARDS[random.nextInt(AWARDS.length)]);
+            }
+            writer.writeEnd();
+        }
+    }
+
+    @Override
+    public Object load(Path file) throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        DogSnapshotFormat.of(file).read(file, store::addAll);
+        return store;
+    }
+
+    @Override
+    public void save(Object store, Path file) throws Exception {
+        DogSnapshotFormat.forSave(file).save(((DogRecordStore) store).snapshot(), file);
+    }
+
+    @Override
+    public int scan(Object store, int column, String text) {
+        DogRecordStore records = (DogRecordStore) store;
+        String query = text.trim().toLowerCase();
+        int found = 0;
+        for (int row = 0; row < records.size(); row++) {
+            if (records.get(row, column).toLowerCase().contains(query)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Object newSearchIndex() {
+        return new DogSearchIndex();
+    }
+
+    @Override
+    public int search(Object index, Object store, int column, String text) {
+        return ((DogSearchIndex) index).search((DogRecordStore) store, column, text.trim()).length;
+    }
+
+    @Override
+    public Object compileReport() throws Exception {
+        try (InputStream template = DogShowBenchmarkAccess.class.getClassLoader()
+                .getResourceAsStream(ReportCache.DOG_SHOW_REPORT)) {
+            return JasperCompileManager.compileReport(template);
+        }
+    }
+
+    @Override
+    public Object cachedReport() throws Exception {
+        return ReportCache.get(ReportCache.DOG_SHOW_REPORT);
+    }
+
+    @Override
+    public AutoCloseable fill(Object report, Object store) throws Exception {
+        DogRecordStore records = (DogRecordStore) store;
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put("ReportTitle", "Отчет о собаках");
+        parameters.put("Author", "Dog Show Administration");
+        return ReportFill.fill((JasperReport) report, parameters,
+                new DogReportDataSource(records, DogRecordStore.columnTitles()), records.size());
+    }
+
+    @Override
+    public void exportHtml(AutoCloseable fill, Path file) throws Exception {
+        HtmlExporter exporter = new HtmlExporter();
+        exporter.setExporterInput(new SimpleExporterInput(((ReportFill) fill).print()));
+        exporter.setExporterOutput(new SimpleHtmlExporterOutput(file.toString()));
+        exporter.exportReport();
+    }
+}
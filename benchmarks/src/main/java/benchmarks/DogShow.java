@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.nio.file.Path;
+
+/**
+ * Измеряемые операции приложения.
+ * <p>
+ * Классы приложения лежат в пакете по умолчанию, из именованного пакета к ним
+ * не обратиться, а JMH требует, чтобы бенчмарки были в именованном пакете.
+ * Поэтому бенчмарки вызывают приложение через этот интерфейс, а реализация
+ * ({@code DogShowBenchmarkAccess}) лежит в пакете по умолчанию рядом с классами
+ * приложения. Хранилище, отчёт и индекс передаются как непрозрачные объекты.
+ */
+public interface DogShow {
+    /** Номер колонки клички. */
+    int NAME = 0;
+
+    /**
+     * Создаёт XML-файл выставки в формате {@code dogs_output.xml} с синтетическими записями.
+     *
+     * @param seed начальное значение генератора: одинаковые параметры дают одинаковый файл
+     */
+    void generate(Path xml, int dogs, long seed) throws Exception;
+
+    /**
+     * Загружает файл так же, как {@code LoadDataThread}: разбор порциями
+     * и добавление порций в хранилище записей.
+     *
+     * @return хранилище записей
+     */
+    Object load(Path file) throws Exception;
+
+    /**
+     * Сохраняет записи полным снимком, как {@code DogJournal} при сохранении; формат — по расширению файла.
+     */
+    void save(Object store, Path file) throws Exception;
+
+    /**
+     * Поиск прямым перебором, как его выполнял {@code performSearch} до индекса:
+     * {@code toLowerCase().contains()} по каждой строке.
+     *
+     * @return число найденных строк
+     */
+    int scan(Object store, int column, String text);
+
+    Object newSearchIndex();
+
+    /**
+     * Поиск по триграммному индексу, как в текущем {@code performSearch}.
+     *
+     * @return число найденных строк
+     */
+    int search(Object index, Object store, int column, String text);
+
+    /**
+     * Компилирует шаблон отчёта без кэша.
+     */
+    Object compileReport() throws Exception;
+
+    /**
+     * Возвращает шаблон отчёта через кэш, как {@code GenerateReportThread}.
+     */
+    Object cachedReport() throws Exception;
+
+    /**
+     * Заполняет отчёт по всем записям.
+     *
+     * @return заполненный отчёт; закрытие освобождает файл подкачки страниц
+     */
+    AutoCloseable fill(Object report, Object store) throws Exception;
+
+    void exportHtml(AutoCloseable fill, Path file) throws Exception;
+
+    /**
+     * Возвращает реализацию из пакета по умолчанию.
+     */
+    static DogShow get() {
+        try {
+            return (DogShow) Class.forName("DogShowBenchmarkAccess").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не найдена реализация DogShow", e);
+        }
+    }
+}
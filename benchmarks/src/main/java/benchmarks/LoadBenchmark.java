@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Загрузка выставки в хранилище записей (путь {@code LoadDataThread} без публикации в EDT):
+ * разбор XML и чтение того же набора из двоичного формата.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dogs;
+
+    private ShowFixture show;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        show = new ShowFixture(dogs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        show.close();
+    }
+
+    @Benchmark
+    public Object xml() throws Exception {
+        return show.app.load(show.xml);
+    }
+
+    @Benchmark
+    public Object binary() throws Exception {
+        return show.app.load(show.binary);
+    }
+}
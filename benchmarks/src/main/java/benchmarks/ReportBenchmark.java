@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Этапы {@code GenerateReportThread}: компиляция шаблона (без кэша и через кэш),
+ * заполнение отчёта и экспорт в HTML. По умолчанию до 100 тысяч собак —
+ * отчёт на миллион записей заполняется минутами; его можно запустить через {@code -p dogs=1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ReportBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int dogs;
+
+    private ShowFixture show;
+    private Object report;
+    private AutoCloseable filled;
+    private Path html;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        show = new ShowFixture(dogs);
+        report = show.app.cachedReport();
+        filled = show.app.fill(report, show.store);
+        html = show.directory.resolve("report.html");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        filled.close();
+        show.close();
+    }
+
+    @Benchmark
+    public Object compile() throws Exception {
+        return show.app.compileReport();
+    }
+
+    @Benchmark
+    public Object cachedTemplate() throws Exception {
+        return show.app.cachedReport();
+    }
+
+    @Benchmark
+    public void fill() throws Exception {
+        show.app.fill(report, show.store).close();
+    }
+
+    @Benchmark
+    public void exportHtml() throws Exception {
+        show.app.exportHtml(filled, html);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Сохранение выставки (полный снимок, как при сохранении в новый файл): запись во временный файл,
+ * сброс на диск и атомарная замена — в XML и в двоичном формате.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SaveBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dogs;
+
+    private ShowFixture show;
+    private Path xmlTarget;
+    private Path binaryTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        show = new ShowFixture(dogs);
+        xmlTarget = show.directory.resolve("saved.xml");
+        binaryTarget = show.directory.resolve("saved.dogbin");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        show.close();
+    }
+
+    @Benchmark
+    public void xml() throws Exception {
+        show.app.save(show.store, xmlTarget);
+    }
+
+    @Benchmark
+    public void binary() throws Exception {
+        show.app.save(show.store, binaryTarget);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Поиск по кличке, как в {@code performSearch}: прямой перебор строк
+ * и триграммный индекс — уже построенный и строящийся с нуля при первом запросе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SearchBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int dogs;
+
+    /** Частая подстрока, кличка целиком и запрос без совпадений. */
+    @Param({"ар", "Мухтар 2", "zzz"})
+    public String query;
+
+    private ShowFixture show;
+    private Object index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        show = new ShowFixture(dogs);
+        index = show.app.newSearchIndex();
+        show.app.search(index, show.store, DogShow.NAME, query);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        show.close();
+    }
+
+    @Benchmark
+    public int scan() {
+        return show.app.scan(show.store, DogShow.NAME, query);
+    }
+
+    @Benchmark
+    public int indexed() {
+        return show.app.search(index, show.store, DogShow.NAME, query);
+    }
+
+    @Benchmark
+    public int indexedCold() {
+        return show.app.search(show.app.newSearchIndex(), show.store, DogShow.NAME, query);
+    }
+}
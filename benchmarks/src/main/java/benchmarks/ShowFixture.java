@@ -0,0 +1,38 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Синтетическая выставка для бенчмарков: XML-файл, тот же набор в двоичном формате
+ * и загруженное хранилище записей — во временном каталоге, который удаляет {@link #close()}.
+ */
+final class ShowFixture implements AutoCloseable {
+    /** Начальное значение генератора: все бенчмарки видят одни и те же данные. */
+    private static final long SEED = 20240501L;
+
+    final DogShow app = DogShow.get();
+    final Path directory;
+    final Path xml;
+    final Path binary;
+    final Object store;
+
+    ShowFixture(int dogs) throws Exception {
+        directory = Files.createTempDirectory("dogshow-bench-");
+        xml = directory.resolve("dogs_" + dogs + ".xml");
+        binary = directory.resolve("dogs_" + dogs + ".dogbin");
+        app.generate(xml, dogs, SEED);
+        store = app.load(xml);
+        app.save(store, binary);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
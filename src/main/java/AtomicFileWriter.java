@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Безопасная запись файла: сбой посреди записи не портит существующий файл.
+ * <p>
+ * Данные пишутся во временный файл в том же каталоге, сбрасываются на диск
+ * ({@link FileChannel#force}), после чего временный файл атомарно переименовывается
+ * поверх целевого. Предыдущая версия файла сохраняется рядом с суффиксом {@code .bak}.
+ * Одновременные записи в один и тот же файл выполняются по очереди.
+ */
+final class AtomicFileWriter {
+    private static final Logger log = Logger.getLogger(AtomicFileWriter.class);
+    private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Запись содержимого файла в открытый канал.
+     */
+    interface ContentWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Атомарно заменяет содержимое файла.
+     *
+     * @return размер записанного файла в байтах
+     */
+    static long write(Path target, ContentWriter content) throws IOException {
+        Path path = target.toAbsolutePath().normalize();
+        ReentrantLock lock = LOCKS.computeIfAbsent(path, p -> new ReentrantLock());
+        lock.lock();
+        try {
+            return writeLocked(path, content);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Путь резервной копии предыдущей версии файла.
+     */
+    static Path backupPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".bak");
+    }
+
+    private static long writeLocked(Path path, ContentWriter content) throws IOException {
+        Path directory = path.getParent();
+        // Files.createTempFile создаёт файл с правами только для владельца, поэтому имя
+        // временного файла формируется вручную, а права остаются такими же, как у обычного файла
+        Path temp = directory.resolve(path.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+        boolean moved = false;
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                content.write(channel);
+                channel.force(true);
+                size = channel.size();
+            }
+            if (Files.exists(path)) {
+                keepBackup(path);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.warn("Файловая система не поддерживает атомарное переименование: " + directory);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+            syncDirectory(directory);
+            return size;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет текущую версию файла как резервную: жёсткой ссылкой, если это возможно,
+     * иначе копированием.
+     */
+    private static void keepBackup(Path path) throws IOException {
+        Path backup = backupPath(path);
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, path);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(path, backup, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск запись каталога, чтобы переименование пережило сбой питания.
+     * Поддерживается не всеми платформами, поэтому ошибки игнорируются.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Не удалось сбросить на диск каталог " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.HtmlExporter;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleHtmlExporterOutput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Пакетное формирование отчётов: отдельный отчёт для каждого значения колонки
+ * (например, для каждого судьи или породы) в форматах HTML и PDF.
+ * <p>
+ * Записи разбиваются на группы по коду значения в словаре, и группы заполняются
+ * параллельно в переданном пуле потоков с общим скомпилированным шаблоном. Крупные группы запускаются первыми, чтобы
+ * последний поток не остался с самым большим отчётом.
+ */
+class BatchReportGenerator {
+    private static final Logger log = Logger.getLogger(BatchReportGenerator.class);
+
+    /**
+     * Получает уведомления о готовности отчётов; вызывается из рабочих потоков.
+     */
+    interface ProgressListener {
+        void reportFinished(Result result, int finished, int total);
+    }
+
+    /**
+     * Итог формирования одного отчёта группы.
+     */
+    static final class Result {
+        final String group;
+        final int rows;
+        final long fillMs;
+        final long htmlMs;
+        final long pdfMs;
+        final Exception error;
+
+        Result(String group, int rows, long fillMs, long htmlMs, long pdfMs, Exception error) {
+            this.group = group;
+            this.rows = rows;
+            this.fillMs = fillMs;
+            this.htmlMs = htmlMs;
+            this.pdfMs = pdfMs;
+            this.error = error;
+        }
+
+        long totalMs() {
+            return fillMs + htmlMs + pdfMs;
+        }
+    }
+
+    private final DogRecordStore records;
+    private final String[] columnNames;
+    private final int groupColumn;
+    private final Path outputDirectory;
+
+    /**
+     * Снимает неизменяемый снимок записей модели; вызывается в EDT.
+     *
+     * @param groupColumn колонка, по значениям которой формируются отчёты,
+     *                    например {@link DogRecordStore#JUDGE}
+     */
+    public BatchReportGenerator(DogTableModel tableModel, int groupColumn, Path outputDirectory) {
+        this.records = tableModel.snapshot();
+        this.columnNames = tableModel.columnNames();
+        this.groupColumn = groupColumn;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Формирует отчёты всех групп и ждёт их завершения.
+     * Ошибка в одном отчёте не прерывает остальные и отражается в его результате.
+     * При прерывании ожидающего потока ещё не готовые отчёты отменяются.
+     *
+     * @param executor пул, в котором заполняются отчёты групп; вызывающий поток
+     *                 не должен принадлежать этому пулу
+     * @return результаты по группам в алфавитном порядке
+     */
+    public List<Result> generate(Executor executor, ProgressListener listener)
+            throws IOException, JRException, InterruptedException {
+        long start = System.nanoTime();
+        JasperReport report = ReportCache.get(ReportCache.DOG_SHOW_REPORT);
+        DogShowMetrics.COMPILE.recordSince(start);
+        Files.createDirectories(outputDirectory);
+        List<Group> groups = partition();
+
+        List<Result> results = new ArrayList<>(groups.size());
+        List<Future<Result>> futures = new ArrayList<>(groups.size());
+        try {
+            ExecutorCompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+            List<Group> bySize = new ArrayList<>(groups);
+            bySize.sort((a, b) -> Integer.compare(b.rows.length, a.rows.length));
+            for (Group group : bySize) {
+                futures.add(completion.submit(() -> generate(report, group)));
+            }
+            for (int finished = 1; finished <= groups.size(); finished++) {
+                Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause()); // generate(report, group) не выбрасывает исключений
+                }
+                results.add(result);
+                if (listener != null) {
+                    listener.reportFinished(result, finished, groups.size());
+                }
+            }
+        } finally {
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        Collator collator = Collator.getInstance(new Locale("ru", "RU"));
+        results.sort((a, b) -> collator.compare(a.group, b.group));
+        logSummary(results, (System.nanoTime() - start) / 1_000_000);
+        return results;
+    }
+
+    private Result generate(JasperReport report, Group group) {
+        long start = System.nanoTime();
+        long filled = start;
+        long html = start;
+        try {
+            HashMap<String, Object> parameters = new HashMap<>();
+            parameters.put("ReportTitle", "Отчет о собаках: " + group.value);
+            parameters.put("Author", "Dog Show Administration");
+            DogReportDataSource dataSource = new DogReportDataSource(records, group.rows, columnNames);
+            try (ReportFill fill = ReportFill.fill(report, parameters, dataSource, group.rows.length)) {
+                filled = System.nanoTime();
+
+                HtmlExporter htmlExporter = new HtmlExporter();
+                htmlExporter.setExporterInput(new SimpleExporterInput(fill.print()));
+                htmlExporter.setExporterOutput(new SimpleHtmlExporterOutput(file(group, ".html")));
+                htmlExporter.exportReport();
+                html = System.nanoTime();
+
+                JRPdfExporter pdfExporter = new JRPdfExporter();
+                pdfExporter.setExporterInput(new SimpleExporterInput(fill.print()));
+                pdfExporter.setExporterOutput(new SimpleOutputStreamExporterOutput(file(group, ".pdf")));
+                pdfExporter.exportReport();
+            }
+            long end = System.nanoTime();
+            DogShowMetrics.FILL.record(filled - start);
+            DogShowMetrics.EXPORT.record(end - filled);
+            return new Result(group.value, group.rows.length, (filled - start) / 1_000_000,
+                    (html - filled) / 1_000_000, (end - html) / 1_000_000, null);
+        } catch (Exception e) {
+            log.error("Ошибка при формировании отчёта для «" + group.value + "»: " + e.getMessage(), e);
+            return new Result(group.value, group.rows.length, 0, 0, 0, e);
+        }
+    }
+
+    private File file(Group group, String extension) {
+        return outputDirectory.resolve(group.fileName + extension).toFile();
+    }
+
+    /**
+     * Разбивает записи на группы по коду значения колонки за два прохода без сортировки.
+     */
+    private List<Group> partition() {
+        int rowCount = records.size();
+        int[] counts = new int[records.pool().size()];
+        for (int row = 0; row < rowCount; row++) {
+            counts[records.code(row, groupColumn)]++;
+        }
+        int[][] rowsByCode = new int[counts.length][];
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                rowsByCode[code] = new int[counts[code]];
+            }
+        }
+        int[] filled = new int[counts.length];
+        for (int row = 0; row < rowCount; row++) {
+            int code = records.code(row, groupColumn);
+            rowsByCode[code][filled[code]++] = row;
+        }
+
+        List<Group> groups = new ArrayList<>();
+        Set<String> fileNames = new HashSet<>();
+        String prefix = groupColumn == DogRecordStore.JUDGE ? "judge"
+                : groupColumn == DogRecordStore.BREED ? "breed" : "column" + groupColumn;
+        for (int code = 0; code < rowsByCode.length; code++) {
+            if (rowsByCode[code] != null) {
+                String value = records.pool().get(code);
+                groups.add(new Group(value, uniqueFileName(prefix, value, fileNames), rowsByCode[code]));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Имя файла отчёта без расширения: недопустимые в именах файлов символы заменяются
+     * подчёркиванием, а совпавшие после замены имена получают номер.
+     */
+    private static String uniqueFileName(String prefix, String value, Set<String> used) {
+        String base = prefix + "_" + (value.trim().isEmpty() ? "empty"
+                : value.trim().replaceAll("[^\\p{L}\\p{N}._-]+", "_"));
+        String name = base;
+        for (int i = 2; !used.add(name.toLowerCase(Locale.ROOT)); i++) {
+            name = base + "_" + i;
+        }
+        return name;
+    }
+
+    private void logSummary(List<Result> results, long elapsedMs) {
+        long busyMs = 0;
+        int failed = 0;
+        for (Result result : results) {
+            busyMs += result.totalMs();
+            if (result.error != null) {
+                failed++;
+            }
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Пакет отчётов: %d шт. (ошибок: %d) за %d мс, ускорение %.1fx",
+                results.size(), failed, elapsedMs, busyMs / (double) Math.max(1, elapsedMs)));
+        List<Result> slowest = new ArrayList<>(results);
+        slowest.sort(Collections.reverseOrder((a, b) -> Long.compare(a.totalMs(), b.totalMs())));
+        for (Result result : slowest) {
+            summary.append(String.format("%n    %-30s %7d записей: заполнение %5d мс, HTML %5d мс, PDF %5d мс%s",
+                    result.group, result.rows, result.fillMs, result.htmlMs, result.pdfMs,
+                    result.error == null ? "" : " — ошибка: " + result.error.getMessage()));
+        }
+        log.info(summary.toString());
+    }
+
+    /**
+     * Группа записей с одним значением колонки.
+     */
+    private static final class Group {
+        final String value;
+        final String fileName;
+        final int[] rows;
+
+        Group(String value, String fileName, int[] rows) {
+            this.value = value;
+            this.fileName = fileName;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Посимвольное чтение текстового файла в UTF-8 для потоковых разборщиков (CSV, NDJSON).
+ * <p>
+ * Байты читаются из канала в один переиспользуемый буфер и декодируются в один
+ * переиспользуемый буфер символов, поэтому чтение не создаёт объектов на каждую запись.
+ * Попутно считается контрольная сумма файла для журнала изменений. Метка порядка байтов
+ * в начале файла пропускается, недопустимые последовательности заменяются символом U+FFFD.
+ */
+final class ChannelTextReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final char[] chars = new char[BUFFER_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final CRC32 crc = new CRC32();
+    private int position;
+    private int limit;
+    private long bytesRead;
+    private boolean endOfInput;
+    private boolean finished;
+
+    private ChannelTextReader(FileChannel channel) {
+        this.channel = channel;
+        bytes.flip();
+    }
+
+    /**
+     * Открывает файл для чтения.
+     */
+    static ChannelTextReader open(Path path) throws IOException {
+        ChannelTextReader reader = new ChannelTextReader(FileChannel.open(path, StandardOpenOption.READ));
+        try {
+            if (reader.fill() && reader.chars[0] == '\uFEFF') {
+                reader.position = 1;
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    /**
+     * Возвращает следующий символ или -1 в конце файла.
+     */
+    int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return chars[position++];
+    }
+
+    /**
+     * Сколько байт прочитано; после чтения до конца — размер файла.
+     */
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Контрольная сумма прочитанных байт; после чтения до конца — всего файла.
+     */
+    long checksum() {
+        return crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Декодирует следующую порцию символов.
+     *
+     * @return {@code false}, если файл прочитан до конца
+     */
+    private boolean fill() throws IOException {
+        if (finished) {
+            return false;
+        }
+        charBuffer.clear();
+        while (true) {
+            // Символов не больше, чем байт, поэтому буфер символов не переполняется
+            decoder.decode(bytes, charBuffer, endOfInput);
+            if (endOfInput) {
+                decoder.flush(charBuffer);
+                finished = true;
+                break;
+            }
+            if (charBuffer.position() > 0) {
+                break;
+            }
+            bytes.compact();
+            int read = channel.read(bytes);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                crc.update(bytes.array(), bytes.position() - read, read);
+                bytesRead += read;
+            }
+            bytes.flip();
+        }
+        position = 0;
+        limit = charBuffer.position();
+        return limit > 0;
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Группировка записей по одной или нескольким колонкам с числом записей в каждой группе,
+ * например собаки по породам, награды по судьям или собаки по владельцам.
+ * <p>
+ * Группы хранятся по кодам словаря хранилища, поэтому учёт записи — это поиск
+ * в хеш-таблице без сравнения строк, а при группировке по одной колонке — просто
+ * счётчик в массиве по коду значения. Группировки модели поддерживает
+ * {@link DogStatistics} при каждом изменении данных; отдельную группировку по снимку
+ * можно построить через {@link #of}. Читать и изменять группировку модели можно только в EDT.
+ */
+final class DogAggregation {
+    /** Порядок групп: по убыванию числа записей, при равенстве — по значениям. */
+    private static final Comparator<Group> BY_COUNT = (a, b) -> {
+        if (a.count != b.count) {
+            return Integer.compare(b.count, a.count);
+        }
+        for (int i = 0; i < a.values.length; i++) {
+            int order = a.values[i].compareTo(b.values[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    };
+
+    private final int[] columns;
+    /** Счётчики групп по нескольким колонкам. */
+    private final Map<Key, int[]> counts = new HashMap<>();
+    /** Счётчики групп по одной колонке, по коду значения. */
+    private int[] countsByCode = new int[0];
+    private int codeGroups;
+    /** Ключ для поиска без создания объекта на каждую запись. */
+    private final Key probe;
+    private StringPool pool;
+    private int total;
+    /** Сколько пользователей запросили группировку у {@link DogStatistics}. */
+    int users;
+
+    /**
+     * @param columns колонки группировки ({@link DogRecordStore#NAME} и т. д.) без повторов
+     */
+    DogAggregation(int... columns) {
+        if (columns.length == 0 || columns.length > DogRecordStore.COLUMN_COUNT) {
+            throw new IllegalArgumentException("Недопустимое число колонок группировки: " + columns.length);
+        }
+        boolean[] used = new boolean[DogRecordStore.COLUMN_COUNT];
+        for (int column : columns) {
+            if (column < 0 || column >= DogRecordStore.COLUMN_COUNT || used[column]) {
+                throw new IllegalArgumentException("Недопустимые колонки группировки: " + Arrays.toString(columns));
+            }
+            used[column] = true;
+        }
+        this.columns = columns.clone();
+        this.probe = new Key(new int[columns.length]);
+    }
+
+    /**
+     * Строит группировку по всем записям хранилища, например по снимку в фоновом потоке.
+     */
+    static DogAggregation of(DogRecordStore store, int... columns) {
+        DogAggregation aggregation = new DogAggregation(columns);
+        aggregation.add(store, 0, store.size() - 1);
+        return aggregation;
+    }
+
+    /**
+     * Колонки группировки.
+     */
+    int[] columns() {
+        return columns.clone();
+    }
+
+    /**
+     * Группирует ли по указанной колонке.
+     */
+    boolean groupsBy(int column) {
+        for (int c : columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Число учтённых записей.
+     */
+    int total() {
+        return total;
+    }
+
+    /**
+     * Число различных групп.
+     */
+    int groupCount() {
+        return columns.length == 1 ? codeGroups : counts.size();
+    }
+
+    /**
+     * Число записей в группе.
+     *
+     * @param values значения колонок группировки в порядке {@link #columns()}
+     */
+    int count(String... values) {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Ожидается значений: " + columns.length + ", получено: " + values.length);
+        }
+        if (pool == null) {
+            return 0;
+        }
+        for (int i = 0; i < values.length; i++) {
+            int code = pool.indexOf(values[i]);
+            if (code < 0) {
+                return 0;
+            }
+            probe.codes[i] = code;
+        }
+        if (columns.length == 1) {
+            return probe.codes[0] < countsByCode.length ? countsByCode[probe.codes[0]] : 0;
+        }
+        probe.rehash();
+        int[] count = counts.get(probe);
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * Все группы по убыванию числа записей.
+     */
+    List<Group> groups() {
+        List<Group> groups = new ArrayList<>(groupCount());
+        forEachGroup((codes, count) -> groups.add(group(codes, count)));
+        groups.sort(BY_COUNT);
+        return groups;
+    }
+
+    /**
+     * Первые {@code limit} групп по убыванию числа записей, например лидеры среди владельцев.
+     * Сортируются только отобранные группы.
+     */
+    List<Group> top(int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Group> best = new PriorityQueue<>(limit + 1, BY_COUNT.reversed());
+        forEachGroup((codes, count) -> {
+            if (best.size() == limit && count < best.peek().count) {
+                return;
+            }
+            best.add(group(codes, count));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        List<Group> groups = new ArrayList<>(best);
+        groups.sort(BY_COUNT);
+        return groups;
+    }
+
+    /**
+     * Учитывает записи с {@code first} по {@code last} включительно.
+     */
+    void add(DogRecordStore store, int first, int last) {
+        if (columns.length > 1) {
+            for (int row = first; row <= last; row++) {
+                update(store, row, 1);
+            }
+            return;
+        }
+        if (last < first) {
+            return;
+        }
+        pool = store.pool();
+        ensureCodeCapacity(pool.size());
+        int[] values = store.column(columns[0]);
+        for (int row = first; row <= last; row++) {
+            if (countsByCode[values[row]]++ == 0) {
+                codeGroups++;
+            }
+        }
+        total += last - first + 1;
+    }
+
+    /**
+     * Учитывает запись.
+     */
+    void add(DogRecordStore store, int row) {
+        update(store, row, 1);
+    }
+
+    /**
+     * Исключает запись; вызывается до её изменения или удаления.
+     */
+    void remove(DogRecordStore store, int row) {
+        update(store, row, -1);
+    }
+
+    /**
+     * Исключает все записи, например при очистке хранилища.
+     */
+    void clear() {
+        counts.clear();
+        countsByCode = new int[0];
+        codeGroups = 0;
+        total = 0;
+        pool = null;
+    }
+
+    private void update(DogRecordStore store, int row, int delta) {
+        // Словарь хранилища заменяется только при очистке, поэтому коды групп остаются верными
+        pool = store.pool();
+        total += delta;
+        if (columns.length == 1) {
+            int code = store.code(row, columns[0]);
+            ensureCodeCapacity(code + 1);
+            if (countsByCode[code] + delta < 0) {
+                throw new IllegalStateException("Запись " + row + " не учтена в группировке");
+            }
+            countsByCode[code] += delta;
+            if (countsByCode[code] == 0) {
+                codeGroups--;
+            } else if (countsByCode[code] == delta) {
+                codeGroups++;
+            }
+            return;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            probe.codes[i] = store.code(row, columns[i]);
+        }
+        probe.rehash();
+        int[] count = counts.get(probe);
+        if (count == null) {
+            if (delta < 0) {
+                throw new IllegalStateException("Запись " + row + " не учтена в группировке");
+            }
+            counts.put(probe.copy(), new int[]{delta});
+        } else if ((count[0] += delta) == 0) {
+            counts.remove(probe);
+        }
+    }
+
+    private void ensureCodeCapacity(int capacity) {
+        if (capacity > countsByCode.length) {
+            countsByCode = Arrays.copyOf(countsByCode, Math.max(capacity, countsByCode.length * 2));
+        }
+    }
+
+    /**
+     * Обходит непустые группы.
+     */
+    private void forEachGroup(GroupVisitor visitor) {
+        if (columns.length == 1) {
+            int[] codes = new int[1];
+            for (int code = 0; code < countsByCode.length; code++) {
+                if (countsByCode[code] > 0) {
+                    codes[0] = code;
+                    visitor.visit(codes, countsByCode[code]);
+                }
+            }
+        } else {
+            for (Map.Entry<Key, int[]> entry : counts.entrySet()) {
+                visitor.visit(entry.getKey().codes, entry.getValue()[0]);
+            }
+        }
+    }
+
+    private Group group(int[] codes, int count) {
+        String[] values = new String[codes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pool.get(codes[i]);
+        }
+        return new Group(values, count);
+    }
+
+    private interface GroupVisitor {
+        void visit(int[] codes, int count);
+    }
+
+    /**
+     * Группа записей с одинаковыми значениями колонок группировки.
+     */
+    static final class Group {
+        private final String[] values;
+        final int count;
+
+        Group(String[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        /**
+         * Значение колонки группировки по её порядковому номеру в {@link #columns()}.
+         */
+        String value(int index) {
+            return values[index];
+        }
+
+        String[] values() {
+            return values.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" / ", values) + " — " + count;
+        }
+    }
+
+    /**
+     * Ключ группы: коды значений колонок группировки.
+     */
+    private static final class Key {
+        final int[] codes;
+        int hash;
+
+        Key(int[] codes) {
+            this.codes = codes;
+            rehash();
+        }
+
+        void rehash() {
+            hash = Arrays.hashCode(codes);
+        }
+
+        Key copy() {
+            return new Key(codes.clone());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(codes, ((Key) other).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Произвольный доступ к записям файла двоичного формата ({@link DogBinaryFormat})
+ * без загрузки файла в память.
+ * <p>
+ * Записи читаются диапазонами, строки словаря — по мере надобности по таблице
+ * смещений; недавно прочитанные значения хранятся в ограниченном кэше, поэтому
+ * породы, судьи и награды читаются с диска один раз. Проверяются заголовок,
+ * коды значений и смещения словаря; контрольная сумма не проверяется — для этого
+ * пришлось бы прочитать весь файл. Методы можно вызывать из нескольких потоков.
+ */
+final class DogArchiveFile implements Closeable {
+    /** Сколько значений словаря держать в кэше. */
+    private static final int VALUE_CACHE_SIZE = 1 << 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final DogBinaryFormat.Header header;
+    private final Map<Integer, String> values = new LinkedHashMap<Integer, String>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > VALUE_CACHE_SIZE;
+        }
+    };
+
+    private DogArchiveFile(Path path, FileChannel channel, DogBinaryFormat.Header header) {
+        this.path = path;
+        this.channel = channel;
+        this.header = header;
+    }
+
+    /**
+     * Открывает файл и проверяет его заголовок.
+     */
+    static DogArchiveFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(DogBinaryFormat.HEADER_SIZE);
+            readFully(channel, head, 0);
+            head.flip();
+            return new DogArchiveFile(path, channel, DogBinaryFormat.Header.read(head, channel.size(), path));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int rowCount() {
+        return header.rowCount;
+    }
+
+    /**
+     * Читает записи с {@code first} по {@code first + count - 1}.
+     *
+     * @return записи в формате {name, breed, owner, judge, award}
+     */
+    String[][] readRows(int first, int count) throws IOException {
+        if (first < 0 || count < 0 || first > header.rowCount - count) {
+            throw new IndexOutOfBoundsException("Записи " + first + "+" + count + " вне диапазона 0.." + header.rowCount);
+        }
+        int columnCount = DogRecordStore.COLUMN_COUNT;
+        ByteBuffer codes = ByteBuffer.allocate(count * columnCount * 4);
+        readFully(channel, codes, header.rowsPosition() + 4L * columnCount * first);
+        codes.flip();
+        String[][] rows = new String[count][columnCount];
+        for (int i = 0; i < count; i++) {
+            for (int c = 0; c < columnCount; c++) {
+                rows[i][c] = value(codes.getInt(), first + i);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String value(int code, int row) throws IOException {
+        if (code < 0 || code >= header.dictionarySize) {
+            throw new IOException("Недопустимый код значения в записи " + row + ": " + code);
+        }
+        synchronized (values) {
+            String value = values.get(code);
+            if (value != null) {
+                return value;
+            }
+        }
+        ByteBuffer bounds = ByteBuffer.allocate(8);
+        readFully(channel, bounds, header.offsetsPosition() + 4L * code);
+        int from = bounds.getInt(0);
+        int to = bounds.getInt(4);
+        if (from < 0 || from > to || to > header.stringsLength) {
+            throw new IOException("Повреждён словарь двоичного снимка: " + path);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(to - from);
+        readFully(channel, bytes, header.stringsPosition() + from);
+        String value = new String(bytes.array(), StandardCharsets.UTF_8);
+        synchronized (values) {
+            values.put(code, value);
+        }
+        return value;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Неожиданный конец файла на позиции " + (position + buffer.position()));
+            }
+        }
+    }
+}
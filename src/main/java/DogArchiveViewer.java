@@ -0,0 +1,72 @@
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JViewport;
+import javax.swing.BorderFactory;
+import java.awt.BorderLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * Окно просмотра архива выставок в двоичном формате, который может не помещаться
+ * в память: таблица только для чтения поверх {@link PagedDogTableModel}.
+ * Сортировка и фильтрация недоступны — для них пришлось бы прочитать все записи.
+ */
+class DogArchiveViewer extends JFrame {
+    private final PagedDogTableModel model;
+    private final JTable table;
+
+    private DogArchiveViewer(DogArchiveFile file, Executor executor) {
+        super("Архив: " + file.path().getFileName());
+        model = new PagedDogTableModel(file, DogRecordStore.columnTitles(), executor);
+        table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        // Страницы подгружаются по мере смещения видимой области
+        scrollPane.getViewport().addChangeListener(e -> updateVisibleRows());
+
+        JLabel status = new JLabel("Записей: " + String.format("%,d", file.rowCount()) + " — " + file.path());
+        status.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(scrollPane, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.close();
+            }
+        });
+        setSize(800, 500);
+    }
+
+    /**
+     * Открывает архив в новом окне; вызывается в EDT.
+     *
+     * @param executor потоки подгрузки страниц
+     */
+    static DogArchiveViewer open(JFrame owner, Path path, Executor executor) throws IOException {
+        DogArchiveViewer viewer = new DogArchiveViewer(DogArchiveFile.open(path), executor);
+        viewer.setLocationRelativeTo(owner);
+        viewer.setVisible(true);
+        viewer.updateVisibleRows();
+        return viewer;
+    }
+
+    private void updateVisibleRows() {
+        JViewport viewport = (JViewport) table.getParent();
+        Rectangle view = viewport.getViewRect();
+        int first = table.rowAtPoint(new Point(0, view.y));
+        int last = table.rowAtPoint(new Point(0, view.y + view.height - 1));
+        if (first < 0) {
+            return; // архив пуст
+        }
+        model.visibleRowsChanged(first, last < 0 ? table.getRowCount() - 1 : last);
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * Порция записей о собаках в колоночном виде.
+ * Порция имеет собственный небольшой словарь, поэтому её можно заполнять
+ * в любом потоке, не затрагивая общий словарь хранилища; при добавлении
+ * в {@link DogRecordStore} коды перекодируются в общий словарь.
+ */
+class DogBatch {
+    private final StringPool pool;
+    private final int[][] columns;
+    private int size;
+
+    public DogBatch(int capacity) {
+        pool = new StringPool(Math.min(capacity, 1024));
+        columns = new int[DogRecordStore.COLUMN_COUNT][Math.max(1, capacity)];
+    }
+
+    /**
+     * Порция из готовых колонок кодов и словаря к ним.
+     *
+     * @param columns массивы кодов по колонкам; порция владеет ими после вызова
+     */
+    DogBatch(StringPool pool, int[][] columns, int size) {
+        this.pool = pool;
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * Добавляет запись в конец порции.
+     */
+    public void add(String name, String breed, String owner, String judge, String award) {
+        if (size == columns[0].length) {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], size * 2);
+            }
+        }
+        columns[DogRecordStore.NAME][size] = pool.intern(name);
+        columns[DogRecordStore.BREED][size] = pool.intern(breed);
+        columns[DogRecordStore.OWNER][size] = pool.intern(owner);
+        columns[DogRecordStore.JUDGE][size] = pool.intern(judge);
+        columns[DogRecordStore.AWARD][size] = pool.intern(award);
+        size++;
+    }
+
+    /**
+     * Добавляет запись из буферов разбора: значение колонки {@code c} — первые
+     * {@code lengths[c]} символов {@code fields[c]}. Буферы можно переиспользовать
+     * для следующей записи; строки создаются только для новых значений.
+     */
+    void add(char[][] fields, int[] lengths) {
+        if (size == columns[0].length) {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], size * 2);
+            }
+        }
+        for (int c = 0; c < columns.length; c++) {
+            columns[c][size] = pool.intern(fields[c], 0, lengths[c]);
+        }
+        size++;
+    }
+
+    /**
+     * Добавляет запись в формате {name, breed, owner, judge, award}.
+     */
+    public void add(String[] row) {
+        add(row[0], row[1], row[2], row[3], row[4]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Код значения в локальном словаре порции.
+     */
+    int code(int row, int column) {
+        return columns[column][row];
+    }
+
+    /**
+     * Локальный словарь порции.
+     */
+    StringPool pool() {
+        return pool;
+    }
+
+    public String get(int row, int column) {
+        return pool.get(columns[column][row]);
+    }
+}
@@ -0,0 +1,344 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Компактный двоичный формат снимка списка собак.
+ * <p>
+ * Структура файла (целые числа — big-endian):
+ * <pre>
+ * заголовок, 32 байта:
+ *     "DOGB", версия, число колонок, число записей, размер словаря, длина строк словаря,
+ *     CRC32 всего, что следует за заголовком (8 байт)
+ * таблица смещений словаря: (размер словаря + 1) × int
+ * строки словаря в UTF-8, подряд, с выравниванием до 4 байт
+ * записи: число записей × число колонок × int — коды значений в словаре
+ * </pre>
+ * Файл читается окнами через {@link FileChannel}: строки словаря декодируются один раз,
+ * а записи копируются как массив целых чисел, без разбора текста.
+ */
+final class DogBinaryFormat {
+    private static final Logger log = Logger.getLogger(DogBinaryFormat.class);
+    /** Расширение файлов в двоичном формате. */
+    static final String EXTENSION = ".dogbin";
+    static final int VERSION = 1;
+    private static final byte[] MAGIC = {'D', 'O', 'G', 'B'};
+    static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DogBinaryFormat() {
+    }
+
+    /**
+     * Проверяет, начинается ли содержимое с сигнатуры двоичного формата.
+     */
+    static boolean hasMagic(ByteBuffer head) {
+        if (head.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head.get(head.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Сохраняет записи в двоичном формате через временный файл с атомарной заменой.
+     * В словарь попадают только значения, которые встречаются в записях.
+     *
+     * @return размер файла и контрольная сумма его содержимого после заголовка
+     */
+    static SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+        long start = System.nanoTime();
+        int rowCount = store.size();
+        int columnCount = DogRecordStore.COLUMN_COUNT;
+        StringPool pool = store.pool();
+
+        // Перенумерация кодов: в словарь попадают только используемые значения
+        int[] remap = new int[pool.size()];
+        int[] dictionary = new int[Math.min(pool.size(), rowCount * columnCount)];
+        int dictionarySize = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int c = 0; c < columnCount; c++) {
+                int code = store.code(row, c);
+                if (remap[code] == 0) {
+                    dictionary[dictionarySize] = code;
+                    remap[code] = ++dictionarySize;
+                }
+            }
+        }
+        int distinct = dictionarySize;
+        byte[][] values = new byte[distinct][];
+        int[] offsets = new int[distinct + 1];
+        for (int i = 0; i < distinct; i++) {
+            values[i] = pool.get(dictionary[i]).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + values[i].length;
+        }
+        int stringsLength = offsets[distinct];
+
+        CRC32 crc = new CRC32();
+        long bytes = AtomicFileWriter.write(path, channel -> {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            // Заголовок дописывается в конце, когда известна контрольная сумма
+            channel.position(HEADER_SIZE);
+            for (int offset : offsets) {
+                putInt(channel, buffer, crc, offset);
+            }
+            for (byte[] value : values) {
+                put(channel, buffer, crc, value);
+            }
+            put(channel, buffer, crc, new byte[padding(stringsLength)]);
+            for (int row = 0; row < rowCount; row++) {
+                for (int c = 0; c < columnCount; c++) {
+                    putInt(channel, buffer, crc, remap[store.code(row, c)] - 1);
+                }
+            }
+            flush(channel, buffer, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).putInt(VERSION).putInt(columnCount).putInt(rowCount)
+                    .putInt(distinct).putInt(stringsLength).putLong(crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        });
+
+        long elapsedNs = Math.max(1, System.nanoTime() - start);
+        log.info(String.format("Сохранено записей: %d (%d байт, словарь %d значений) за %d мс, %.1f МБ/с",
+                rowCount, bytes, distinct, elapsedNs / 1_000_000, bytes * 1e9 / elapsedNs / (1024 * 1024)));
+        return new SnapshotInfo(bytes, crc.getValue());
+    }
+
+    /**
+     * Читает файл двоичного формата и передаёт все записи обработчику одной порцией.
+     * <p>
+     * Файл читается через {@link FileChannel#read} окнами в куче, без отображения в память:
+     * отображение освобождается только сборщиком мусора, а пока оно живо, в Windows файл
+     * нельзя заменить (например, при уплотнении журнала). {@link DogRecordStore} хранит колонки
+     * в массивах кучи, поэтому записи всё равно копируются; постраничный просмотр без
+     * загрузки всего файла — {@link DogArchiveFile}. Контрольная сумма обновляется по каждому
+     * прочитанному окну, так что файл читается один раз. Записи передаются обработчику только
+     * после её проверки: опубликованные в модели данные уже нельзя отозвать, если файл
+     * окажется повреждён.
+     *
+     * @return размер файла и контрольная сумма его содержимого после заголовка
+     */
+    static SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+        long size;
+        Header header;
+        DogBatch batch;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Недопустимый размер двоичного снимка: " + size + " байт");
+            }
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, head, 0);
+            head.flip();
+            header = Header.read(head, size, path);
+            CRC32 crc = new CRC32();
+            try {
+                batch = decode(channel, header, crc, path);
+            } catch (IOException e) {
+                // У повреждённого файла сообщаем о контрольной сумме, а не о следствии повреждения
+                if (checksum(channel, size) != header.checksum) {
+                    throw new IOException("Контрольная сумма двоичного снимка не совпадает: " + path, e);
+                }
+                throw e;
+            }
+            if (crc.getValue() != header.checksum) {
+                throw new IOException("Контрольная сумма двоичного снимка не совпадает: " + path);
+            }
+        }
+        handler.onChunk(batch);
+        return new SnapshotInfo(size, header.checksum);
+    }
+
+    /**
+     * Декодирует словарь и копирует коды записей в колонки порции,
+     * обновляя контрольную сумму по всему прочитанному после заголовка.
+     */
+    private static DogBatch decode(FileChannel channel, Header header, CRC32 crc, Path path) throws IOException {
+        int columnCount = DogRecordStore.COLUMN_COUNT;
+        int rowCount = header.rowCount;
+        int dictionarySize = header.dictionarySize;
+        int stringsLength = header.stringsLength;
+
+        // Таблица смещений и строки словаря с выравниванием — одним чтением
+        ByteBuffer dictionary = ByteBuffer.allocate((int) (header.rowsPosition() - header.offsetsPosition()));
+        readFully(channel, dictionary, header.offsetsPosition());
+        crc.update(dictionary.array(), 0, dictionary.capacity());
+        int[] offsets = new int[dictionarySize + 1];
+        dictionary.flip();
+        dictionary.asIntBuffer().get(offsets);
+        int stringsStart = (int) (header.stringsPosition() - header.offsetsPosition());
+
+        StringPool pool = new StringPool(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            int from = offsets[i];
+            int to = offsets[i + 1];
+            if (from < 0 || from > to || to > stringsLength) {
+                throw new IOException("Повреждён словарь двоичного снимка: " + path);
+            }
+            pool.intern(new String(dictionary.array(), stringsStart + from, to - from, StandardCharsets.UTF_8));
+        }
+        if (pool.size() != dictionarySize) {
+            throw new IOException("Повторяющиеся значения в словаре двоичного снимка: " + path);
+        }
+
+        int[][] columns = new int[columnCount][rowCount];
+        ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+        IntBuffer codes = window.asIntBuffer();
+        long position = header.rowsPosition();
+        long remaining = 4L * rowCount * columnCount;
+        int row = 0;
+        int c = 0;
+        while (remaining > 0) {
+            window.clear();
+            window.limit((int) Math.min(BUFFER_SIZE, remaining));
+            readFully(channel, window, position);
+            crc.update(window.array(), 0, window.limit());
+            position += window.limit();
+            remaining -= window.limit();
+            codes.clear();
+            codes.limit(window.limit() / 4);
+            while (codes.hasRemaining()) {
+                int code = codes.get();
+                if (code < 0 || code >= dictionarySize) {
+                    throw new IOException("Недопустимый код значения в записи " + row + ": " + code);
+                }
+                columns[c][row] = code;
+                if (++c == columnCount) {
+                    c = 0;
+                    row++;
+                }
+            }
+        }
+        return new DogBatch(pool, columns, rowCount);
+    }
+
+    /**
+     * Контрольная сумма всего содержимого файла после заголовка.
+     */
+    private static long checksum(FileChannel channel, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long position = HEADER_SIZE; position < size; position += window.limit()) {
+            window.clear();
+            window.limit((int) Math.min(BUFFER_SIZE, size - position));
+            readFully(channel, window, position);
+            crc.update(window.array(), 0, window.limit());
+        }
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Неожиданный конец файла на позиции " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Заголовок двоичного снимка и расположение его частей в файле.
+     */
+    static final class Header {
+        final int rowCount;
+        final int dictionarySize;
+        final int stringsLength;
+        final long checksum;
+
+        private Header(int rowCount, int dictionarySize, int stringsLength, long checksum) {
+            this.rowCount = rowCount;
+            this.dictionarySize = dictionarySize;
+            this.stringsLength = stringsLength;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Разбирает и проверяет заголовок: сигнатуру, версию, число колонок
+         * и соответствие размеров частей размеру файла. Контрольная сумма не проверяется.
+         *
+         * @param head     начало файла, не меньше {@value DogBinaryFormat#HEADER_SIZE} байт
+         * @param fileSize размер файла
+         */
+        static Header read(ByteBuffer head, long fileSize, Path path) throws IOException {
+            if (fileSize < HEADER_SIZE || head.remaining() < HEADER_SIZE || !hasMagic(head)) {
+                throw new IOException("Файл не является двоичным снимком: " + path);
+            }
+            int start = head.position();
+            int version = head.getInt(start + 4);
+            int columnCount = head.getInt(start + 8);
+            Header header = new Header(head.getInt(start + 12), head.getInt(start + 16),
+                    head.getInt(start + 20), head.getLong(start + 24));
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия двоичного снимка: " + version);
+            }
+            if (columnCount != DogRecordStore.COLUMN_COUNT) {
+                throw new IOException("Неверное число колонок в двоичном снимке: " + columnCount);
+            }
+            if (header.rowCount < 0 || header.dictionarySize < 0 || header.stringsLength < 0
+                    || header.rowsPosition() + 4L * header.rowCount * columnCount != fileSize) {
+                throw new IOException("Повреждён заголовок двоичного снимка: " + path);
+            }
+            return header;
+        }
+
+        long offsetsPosition() {
+            return HEADER_SIZE;
+        }
+
+        long stringsPosition() {
+            return offsetsPosition() + 4L * (dictionarySize + 1);
+        }
+
+        long rowsPosition() {
+            return stringsPosition() + stringsLength + padding(stringsLength);
+        }
+    }
+
+    private static int padding(int length) {
+        return (4 - (length & 3)) & 3;
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, CRC32 crc, int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush(channel, buffer, crc);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void put(FileChannel channel, ByteBuffer buffer, CRC32 crc, byte[] value) throws IOException {
+        int offset = 0;
+        while (offset < value.length) {
+            if (!buffer.hasRemaining()) {
+                flush(channel, buffer, crc);
+            }
+            int length = Math.min(buffer.remaining(), value.length - offset);
+            buffer.put(value, offset, length);
+            offset += length;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
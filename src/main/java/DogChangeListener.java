@@ -0,0 +1,30 @@
+/**
+ * Слушатель изменений данных {@link DogTableModel}.
+ * В отличие от {@code TableModelListener} получает точные сведения об изменённых
+ * строках модели. Вызывается в EDT после применения изменения.
+ */
+interface DogChangeListener {
+    /**
+     * Добавлены строки с {@code first} по {@code last} включительно.
+     */
+    void rowsAdded(DogTableModel model, int first, int last);
+
+    /**
+     * Изменены значения строки.
+     */
+    void rowChanged(DogTableModel model, int row);
+
+    /**
+     * Изменено значение колонки в нескольких строках; новое значение у всех строк одно.
+     *
+     * @param rows номера строк по возрастанию
+     */
+    void columnChanged(DogTableModel model, int[] rows, int column);
+
+    /**
+     * Удалены строки.
+     *
+     * @param rows номера удалённых строк (до удаления) по возрастанию
+     */
+    void rowsRemoved(DogTableModel model, int[] rows);
+}
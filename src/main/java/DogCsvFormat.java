@@ -0,0 +1,243 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Список собак в формате CSV (RFC 4180): по записи в строке, поля
+ * {@code name,breed,owner,judge,award}.
+ * <p>
+ * При чтении разделитель (запятая, точка с запятой или табуляция) определяется по первому
+ * встреченному в файле, а первая строка считается заголовком, если хотя бы два её поля
+ * (или единственное поле) — известные имена колонок ({@code name}, {@code breed} и т. д.
+ * или заголовки таблицы): тогда колонки сопоставляются по именам и могут идти в любом
+ * порядке, лишние поля игнорируются, а недостающие колонки остаются пустыми. Без заголовка
+ * поля берутся по порядку. Разбор потоковый и не создаёт строк для уже встречавшихся
+ * значений. При записи выводится заголовок, поля с разделителем, кавычками или переводом
+ * строки заключаются в кавычки, строки разделяются CRLF.
+ */
+final class DogCsvFormat {
+    private static final Logger log = Logger.getLogger(DogCsvFormat.class);
+    /** Расширение файлов в формате CSV. */
+    static final String EXTENSION = ".csv";
+    /** Имена полей в порядке колонок {@link DogRecordStore}. */
+    static final String[] FIELD_NAMES = {"name", "breed", "owner", "judge", "award"};
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private DogCsvFormat() {
+    }
+
+    /**
+     * Читает файл и передаёт записи обработчику порциями.
+     *
+     * @return размер и контрольная сумма файла
+     */
+    static SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+        try (ChannelTextReader in = ChannelTextReader.open(path)) {
+            new Parser(path, in, handler).parse();
+            return new SnapshotInfo(in.bytesRead(), in.checksum());
+        }
+    }
+
+    /**
+     * Сохраняет записи в CSV: потоково, через временный файл с атомарной заменой.
+     *
+     * @return размер и контрольная сумма записанного файла
+     */
+    static SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+        long start = System.nanoTime();
+        int rowCount = store.size();
+        CRC32 crc = new CRC32();
+        long bytes = AtomicFileWriter.write(path, channel -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), StandardCharsets.UTF_8), 64 * 1024);
+            out.write(String.join(",", FIELD_NAMES));
+            out.write(LINE_SEPARATOR);
+            for (int row = 0; row < rowCount; row++) {
+                for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                    if (c > 0) {
+                        out.write(',');
+                    }
+                    writeField(out, store.get(row, c));
+                }
+                out.write(LINE_SEPARATOR);
+            }
+            out.flush();
+        });
+
+        long elapsedNs = Math.max(1, System.nanoTime() - start);
+        log.info(String.format("Сохранено записей: %d (%d байт, CSV) за %d мс, %.1f МБ/с",
+                rowCount, bytes, elapsedNs / 1_000_000, bytes * 1e9 / elapsedNs / (1024 * 1024)));
+        return new SnapshotInfo(bytes, crc.getValue());
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r' || c == ';' || c == '\t';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int plain = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                // Кавычка внутри значения удваивается
+                out.write(value, plain, i + 1 - plain);
+                plain = i;
+            }
+        }
+        out.write(value, plain, value.length() - plain);
+        out.write('"');
+    }
+
+    /**
+     * Потоковый разборщик одного файла.
+     */
+    private static final class Parser {
+        private final Path path;
+        private final ChannelTextReader in;
+        private final DogXmlReader.ChunkHandler handler;
+        private final TextRecordBuffer fields = new TextRecordBuffer(DogRecordStore.COLUMN_COUNT);
+        /** Номер поля записи для каждой колонки или -1, если колонки нет в файле. */
+        private final int[] fieldOfColumn = {0, 1, 2, 3, 4};
+        private final char[][] columnValues = new char[DogRecordStore.COLUMN_COUNT][];
+        private final int[] columnLengths = new int[DogRecordStore.COLUMN_COUNT];
+        private DogBatch batch = new DogBatch(DogXmlReader.DEFAULT_CHUNK_SIZE);
+        private int delimiter = -1;
+        private boolean firstRecord = true;
+        private long line = 1;
+
+        Parser(Path path, ChannelTextReader in, DogXmlReader.ChunkHandler handler) {
+            this.path = path;
+            this.in = in;
+            this.handler = handler;
+        }
+
+        void parse() throws Exception {
+            int field = 0;
+            boolean empty = true; // в записи ещё нет ни символов, ни разделителей
+            boolean quoted = false;
+            long recordLine = line;
+            while (true) {
+                int c = in.read();
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Незакрытые кавычки в записи со строки " + recordLine + " файла " + path);
+                    }
+                    if (c != '"') {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        fields.append(field, (char) c);
+                        continue;
+                    }
+                    c = in.read();
+                    if (c == '"') {
+                        fields.append(field, '"');
+                        continue;
+                    }
+                    quoted = false; // c — первый символ после закрывающей кавычки
+                }
+                if (c < 0) {
+                    break;
+                }
+                if (c == '\n') {
+                    if (!empty) {
+                        endRecord(field);
+                    }
+                    line++;
+                    recordLine = line;
+                    field = 0;
+                    empty = true;
+                } else if (c == delimiter || delimiter < 0 && (c == ',' || c == ';' || c == '\t')) {
+                    delimiter = c;
+                    field++;
+                    fields.clear(field);
+                    empty = false;
+                } else if (c == '"' && fields.length(field) == 0) {
+                    quoted = true;
+                    empty = false;
+                } else if (c != '\r') {
+                    fields.append(field, (char) c);
+                    empty = false;
+                }
+            }
+            if (!empty) {
+                endRecord(field);
+            }
+            if (!batch.isEmpty()) {
+                handler.onChunk(batch);
+            }
+        }
+
+        /**
+         * Добавляет прочитанную запись в порцию или, если это заголовок, запоминает порядок колонок.
+         *
+         * @param lastField номер последнего поля записи
+         */
+        private void endRecord(int lastField) throws Exception {
+            if (firstRecord) {
+                firstRecord = false;
+                if (readHeader(lastField)) {
+                    fields.clear();
+                    return;
+                }
+            }
+            for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                int field = fieldOfColumn[c];
+                boolean present = field >= 0 && field <= lastField;
+                columnValues[c] = fields.value(present ? field : 0);
+                columnLengths[c] = present ? fields.length(field) : 0;
+            }
+            batch.add(columnValues, columnLengths);
+            fields.clear();
+            if (batch.size() == DogXmlReader.DEFAULT_CHUNK_SIZE) {
+                handler.onChunk(batch);
+                batch = new DogBatch(DogXmlReader.DEFAULT_CHUNK_SIZE);
+            }
+        }
+
+        /**
+         * Сопоставляет колонки полям, если запись — заголовок.
+         *
+         * @return {@code true}, если запись — заголовок
+         */
+        private boolean readHeader(int lastField) {
+            String[] titles = DogRecordStore.columnTitles();
+            int[] columns = new int[DogRecordStore.COLUMN_COUNT];
+            Arrays.fill(columns, -1);
+            int known = 0;
+            for (int field = 0; field <= lastField; field++) {
+                String name = fields.toString(field).trim();
+                int column = -1;
+                for (int c = 0; c < DogRecordStore.COLUMN_COUNT && column < 0; c++) {
+                    if (FIELD_NAMES[c].equals(name.toLowerCase(Locale.ROOT)) || titles[c].equalsIgnoreCase(name)) {
+                        column = c;
+                    }
+                }
+                if (column >= 0 && columns[column] < 0) {
+                    columns[column] = field;
+                    known++;
+                }
+            }
+            if (known < Math.min(2, lastField + 1)) {
+                return false;
+            }
+            System.arraycopy(columns, 0, fieldOfColumn, 0, columns.length);
+            return true;
+        }
+    }
+}
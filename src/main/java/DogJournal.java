@@ -0,0 +1,597 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Журнал изменений, дописываемый к последнему полному снимку (XML-файлу).
+ * <p>
+ * Добавление, изменение и удаление записей в модели копятся в памяти фонового потока
+ * журнала и попадают в файл {@code <снимок>.journal} только при сохранении
+ * ({@link #commit()}): все изменения с прошлого сохранения пишутся одной порцией с одним
+ * сбросом на диск (групповая фиксация), поэтому сохранение не зависит от размера данных.
+ * Несохранённые изменения при закрытии журнала отбрасываются, так что файл журнала
+ * всегда содержит только сохранённые пользователем данные. При загрузке снимка журнал
+ * применяется поверх него. Когда журнал вырастает, очередное сохранение записывает
+ * новый полный снимок и очищает журнал. Файл журнала создаётся при первом сохранении,
+ * поэтому простой просмотр файла ничего рядом с ним не создаёт.
+ * <p>
+ * Формат: заголовок (сигнатура, версия, размер и CRC32 снимка) и записи вида
+ * [длина][CRC32][данные]. Если снимок не совпадает с заголовком, журнал к нему
+ * не относится и игнорируется. Оборванная при сбое последняя запись отбрасывается.
+ */
+final class DogJournal implements DogChangeListener, Closeable {
+    private static final Logger log = Logger.getLogger(DogJournal.class);
+
+    private static final int MAGIC = 0x444F474A; // "DOGJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+    /** Количество операций в журнале, после которого сохранение записывает полный снимок. */
+    private static final int COMPACT_OPERATIONS = 50_000;
+    /** Размер журнала, после которого сохранение записывает полный снимок. */
+    private static final long COMPACT_BYTES = 16L * 1024 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_EDIT = 2;
+    private static final byte OP_DELETE = 3;
+    private static final byte OP_SET_COLUMN = 4;
+
+    /** Признак закрытия в очереди: несохранённые операции отбрасываются, поток завершается. */
+    private static final Object CLOSE = new Object();
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    /** Снимок, к которому относится журнал, или {@code null}, если снимок ещё записывается. */
+    private final SnapshotInfo snapshot;
+    /** Конец последней целой записи существующего журнала или 0, если журнал начинается заново. */
+    private final long validEnd;
+    private final List<Operation> recovered;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    /** Файл журнала; открывается потоком журнала при первой записи. */
+    private FileChannel channel;
+
+    private DogTableModel model;
+    /** Операций в журнале с момента последнего уплотнения (доступ только из EDT). */
+    private int operationCount;
+    private volatile long journalSize;
+    private volatile boolean compacting;
+    private volatile IOException failure;
+
+    private DogJournal(Path snapshotPath, SnapshotInfo snapshot, List<Operation> recovered, long validEnd) {
+        this.snapshotPath = snapshotPath.toAbsolutePath().normalize();
+        this.journalPath = journalPath(this.snapshotPath);
+        this.snapshot = snapshot;
+        this.validEnd = validEnd;
+        this.recovered = recovered;
+        this.operationCount = recovered.size();
+        this.journalSize = validEnd;
+        writer = new Thread(this::writeLoop, "journal-" + snapshotPath.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Путь файла журнала для снимка.
+     */
+    static Path journalPath(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal");
+    }
+
+    /**
+     * Открывает журнал только что загруженного снимка. Если журнал относится к этому снимку,
+     * его операции доступны через {@link #recoveredOperations()}; иначе журнал начнётся заново
+     * при первом сохранении. Файл журнала при открытии не создаётся и не изменяется.
+     */
+    static DogJournal open(Path snapshotPath, SnapshotInfo snapshot) throws IOException {
+        List<Operation> operations = new ArrayList<>();
+        long end = read(journalPath(snapshotPath), snapshot, operations);
+        return new DogJournal(snapshotPath, snapshot, operations, end);
+    }
+
+    /**
+     * Сохранённые операции журнала снимка без открытия журнала для записи,
+     * например чтобы учесть их при слиянии файлов.
+     *
+     * @return операции или пустой список, если журнала нет или он относится к другому снимку
+     */
+    static List<Operation> committedOperations(Path snapshotPath, SnapshotInfo snapshot) throws IOException {
+        List<Operation> operations = new ArrayList<>();
+        read(journalPath(snapshotPath), snapshot, operations);
+        return operations;
+    }
+
+    /**
+     * Применяет сохранённые операции журнала снимка к прочитанным из снимка записям,
+     * как при открытии файла в интерфейсе, — для чтения файла без открытия журнала
+     * (пакетный режим, слияние файлов). Можно вызывать в любом потоке.
+     *
+     * @param batches записи снимка порциями в порядке файла
+     * @return те же порции, если журнала нет или он относится к другому снимку,
+     *         иначе одна порция с записями после применения журнала
+     */
+    static List<DogBatch> applyCommitted(Path snapshotPath, SnapshotInfo snapshot, List<DogBatch> batches)
+            throws IOException {
+        List<Operation> operations = committedOperations(snapshotPath, snapshot);
+        if (operations.isEmpty()) {
+            return batches;
+        }
+        // Модель видна только этому потоку, поэтому изменять её можно вне EDT
+        DogTableModel model = new DogTableModel(DogRecordStore.columnTitles());
+        model.addBatches(batches);
+        for (Operation operation : operations) {
+            operation.apply(model);
+        }
+        DogRecordStore store = model.store();
+        int size = store.size();
+        int[][] columns = new int[DogRecordStore.COLUMN_COUNT][size];
+        for (int row = 0; row < size; row++) {
+            for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                columns[c][row] = store.code(row, c);
+            }
+        }
+        log.info("К файлу " + snapshotPath + " применён журнал изменений: операций " + operations.size());
+        return Collections.singletonList(new DogBatch(store.pool(), columns, size));
+    }
+
+    /**
+     * Создаёт журнал для нового снимка: снимок данных модели записывается в фоне
+     * первым действием журнала, а последующие изменения дописываются после него
+     * при сохранении. Вызывается в EDT при сохранении в новый файл.
+     */
+    static DogJournal create(Path snapshotPath, DogTableModel model) {
+        DogJournal journal = new DogJournal(snapshotPath, null, Collections.<Operation>emptyList(), 0);
+        journal.compacting = true;
+        journal.queue.add(new Compaction(model.snapshot()));
+        journal.operationCount = 0;
+        journal.attach(model);
+        return journal;
+    }
+
+    /**
+     * Операции, прочитанные из журнала при открытии; их нужно применить к модели
+     * до вызова {@link #attach}.
+     */
+    List<Operation> recoveredOperations() {
+        return recovered;
+    }
+
+    /**
+     * Путь снимка, к которому относится журнал.
+     */
+    Path snapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Была ли ошибка записи журнала или снимка. После неё журнал больше ничего не пишет:
+     * его следует закрыть и сохранить данные полным снимком через {@link #create}.
+     */
+    boolean failed() {
+        return failure != null;
+    }
+
+    /**
+     * Начинает записывать изменения модели в журнал.
+     */
+    void attach(DogTableModel model) {
+        this.model = model;
+        model.addChangeListener(this);
+    }
+
+    /**
+     * Запрашивает фиксацию: изменения, сделанные до вызова, будут одной порцией записаны
+     * в журнал и сброшены на диск, а если журнал вырос — записаны новым полным снимком.
+     * Вызывается в EDT при сохранении; дождаться записи можно в фоновом потоке через
+     * {@link Commit#await()}.
+     */
+    Commit commit() {
+        if (model != null && !compacting
+                && (operationCount >= COMPACT_OPERATIONS || journalSize >= COMPACT_BYTES)) {
+            // Снимок берётся в EDT в тот же момент, что и положение в очереди,
+            // поэтому операции до него входят в снимок, а после — в очищенный журнал
+            compacting = true;
+            operationCount = 0;
+            queue.add(new Compaction(model.snapshot()));
+        }
+        Commit commit = new Commit();
+        queue.add(commit);
+        return commit;
+    }
+
+    /**
+     * Прекращает записывать изменения модели (вызывается в EDT).
+     */
+    void detach() {
+        if (model != null) {
+            model.removeChangeListener(this);
+            model = null;
+        }
+    }
+
+    /**
+     * Дожидается уже запрошенных фиксаций, отбрасывает изменения после последней из них
+     * (несохранённые) и закрывает файл. Журнал должен быть предварительно отключён
+     * от модели через {@link #detach()}.
+     */
+    @Override
+    public void close() throws IOException {
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание закрытия журнала прервано");
+        }
+    }
+
+    @Override
+    public void rowsAdded(DogTableModel source, int first, int last) {
+        for (int row = first; row <= last; row++) {
+            enqueue(new Operation(OP_ADD, row, null, source.getRow(row)));
+        }
+    }
+
+    @Override
+    public void rowChanged(DogTableModel source, int row) {
+        enqueue(new Operation(OP_EDIT, row, null, source.getRow(row)));
+    }
+
+    @Override
+    public void columnChanged(DogTableModel source, int[] rows, int column) {
+        // Одна запись на всё изменение: номера строк, колонка и общее значение
+        enqueue(new Operation(OP_SET_COLUMN, column, rows.clone(),
+                new String[]{(String) source.getValueAt(rows[0], column)}));
+    }
+
+    @Override
+    public void rowsRemoved(DogTableModel source, int[] rows) {
+        enqueue(new Operation(OP_DELETE, -1, rows.clone(), null));
+    }
+
+    private void enqueue(Operation operation) {
+        queue.add(operation);
+        operationCount++;
+    }
+
+    /**
+     * Цикл фонового потока: накопление операций в памяти, фиксация и уплотнение.
+     */
+    private void writeLoop() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == CLOSE) {
+                    if (buffer.size() > 0) {
+                        log.info("Несохранённые изменения не записаны в журнал " + journalPath);
+                    }
+                    break;
+                }
+                if (item instanceof Commit) {
+                    if (failure == null) {
+                        try {
+                            flush(buffer);
+                        } catch (IOException e) {
+                            log.error("Ошибка записи журнала " + journalPath, e);
+                            failure = e;
+                        }
+                    }
+                    // Ожидающий фиксации узнаёт об ошибке через failure
+                    ((Commit) item).latch.countDown();
+                } else if (failure != null) {
+                    continue; // После ошибки журнал не пишется: следующее сохранение запишет полный снимок
+                } else if (item instanceof Operation) {
+                    ((Operation) item).writeRecord(out);
+                } else {
+                    // Снимок уже содержит все операции, накопленные до него
+                    buffer.reset();
+                    try {
+                        compact((Compaction) item);
+                    } catch (IOException e) {
+                        log.error("Ошибка записи снимка " + snapshotPath, e);
+                        failure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Поток журнала остановлен
+        } catch (IOException e) {
+            // Запись в буфер в памяти не выбрасывает исключений
+            throw new IllegalStateException(e);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Дописывает накопленные записи в файл и сбрасывает их на диск.
+     */
+    private void flush(ByteArrayOutputStream buffer) throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        if (channel == null) {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (validEnd >= HEADER_SIZE) {
+                channel.truncate(validEnd); // оборванный при сбое хвост
+            } else {
+                resetTo(channel, snapshot);
+            }
+            channel.position(channel.size());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        journalSize = channel.size();
+        buffer.reset();
+    }
+
+    /**
+     * Записывает полный снимок и начинает журнал заново.
+     */
+    private void compact(Compaction compaction) throws IOException {
+        long start = System.nanoTime();
+        SnapshotInfo written = DogSnapshotFormat.forSave(snapshotPath).save(compaction.store, snapshotPath);
+        DogShowMetrics.SAVE.recordSince(start);
+        if (channel == null) {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        resetTo(channel, written);
+        channel.position(channel.size());
+        journalSize = channel.size();
+        compacting = false;
+        log.info("Журнал уплотнён в снимок " + snapshotPath + " за "
+                + (System.nanoTime() - start) / 1_000_000 + " мс");
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть журнал " + journalPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Читает операции существующего журнала, если он относится к снимку.
+     *
+     * @return конец последней целой записи или 0, если журнала нет или он не относится к снимку
+     */
+    private static long read(Path path, SnapshotInfo snapshot, List<Operation> operations) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || !readHeaderMatches(channel, snapshot)) {
+                if (channel.size() > 0) {
+                    log.warn("Журнал " + path + " не относится к снимку (" + snapshot
+                            + ") и будет заменён при сохранении.");
+                }
+                return 0;
+            }
+            long end = readOperations(channel, operations);
+            if (end < channel.size()) {
+                log.warn("Журнал " + path + " оборван на позиции " + end + ", хвост будет отброшен.");
+            }
+            log.info("Журнал " + path + ": операций для восстановления " + operations.size());
+            return end;
+        }
+    }
+
+    /**
+     * Фиксация, запрошенная через {@link #commit()}.
+     */
+    final class Commit {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private Commit() {
+        }
+
+        /**
+         * Дожидается, пока изменения будут записаны и сброшены на диск.
+         *
+         * @throws IOException если запись журнала или снимка не удалась
+         */
+        void await() throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание фиксации журнала прервано");
+            }
+            IOException error = failure;
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static void resetTo(FileChannel channel, SnapshotInfo snapshot) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(snapshot.size()).putLong(snapshot.checksum());
+        header.flip();
+        channel.truncate(0);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+    }
+
+    private static boolean readHeaderMatches(FileChannel channel, SnapshotInfo snapshot) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION
+                && snapshot.matches(header.getLong(), header.getLong());
+    }
+
+    /**
+     * Читает записи журнала до конца файла или до первой повреждённой записи.
+     *
+     * @return позиция конца последней целой записи
+     */
+    private static long readOperations(FileChannel channel, List<Operation> operations) throws IOException {
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer prefix = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+        while (position + 8 <= size) {
+            prefix.clear();
+            readFully(channel, prefix, position);
+            prefix.flip();
+            int length = prefix.getInt();
+            int checksum = prefix.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + 8);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            payload.flip();
+            operations.add(Operation.read(payload));
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Неожиданный конец журнала");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Задание на уплотнение: снимок данных модели на момент постановки в очередь.
+     */
+    private static final class Compaction {
+        final DogRecordStore store;
+
+        Compaction(DogRecordStore store) {
+            this.store = store;
+        }
+    }
+
+    /**
+     * Операция журнала: добавление, изменение или удаление записей
+     * либо установка значения колонки в нескольких записях.
+     */
+    static final class Operation {
+        private final byte type;
+        /** Номер строки, а для {@code OP_SET_COLUMN} — номер колонки. */
+        private final int row;
+        private final int[] rows;
+        private final String[] values;
+
+        private Operation(byte type, int row, int[] rows, String[] values) {
+            this.type = type;
+            this.row = row;
+            this.rows = rows;
+            this.values = values;
+        }
+
+        /**
+         * Применяет операцию к модели.
+         */
+        void apply(DogTableModel model) {
+            switch (type) {
+                case OP_ADD:
+                    model.addRow(values);
+                    break;
+                case OP_EDIT:
+                    model.setRow(row, values);
+                    break;
+                case OP_SET_COLUMN:
+                    model.setColumnValue(rows, row, values[0]);
+                    break;
+                default:
+                    model.removeRows(rows);
+                    break;
+            }
+        }
+
+        void writeRecord(DataOutputStream out) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeByte(type);
+            if (type == OP_DELETE || type == OP_SET_COLUMN) {
+                data.writeInt(rows.length);
+                for (int r : rows) {
+                    data.writeInt(r);
+                }
+            }
+            if (type != OP_DELETE) {
+                data.writeInt(row);
+                for (String value : values) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    data.writeInt(bytes.length);
+                    data.write(bytes);
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload.toByteArray());
+            out.writeInt(payload.size());
+            out.writeInt((int) crc.getValue());
+            payload.writeTo(out);
+        }
+
+        static Operation read(ByteBuffer payload) throws IOException {
+            byte type = payload.get();
+            if (type < OP_ADD || type > OP_SET_COLUMN) {
+                throw new IOException("Неизвестная операция журнала: " + type);
+            }
+            int[] rows = null;
+            if (type == OP_DELETE || type == OP_SET_COLUMN) {
+                rows = new int[payload.getInt()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = payload.getInt();
+                }
+            }
+            if (type == OP_DELETE) {
+                return new Operation(type, -1, rows, null);
+            }
+            int row = payload.getInt();
+            String[] values = new String[type == OP_SET_COLUMN ? 1 : DogRecordStore.COLUMN_COUNT];
+            for (int c = 0; c < values.length; c++) {
+                byte[] bytes = new byte[payload.getInt()];
+                payload.get(bytes);
+                values[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new Operation(type, row, rows, values);
+        }
+    }
+}
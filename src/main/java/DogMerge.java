@@ -0,0 +1,578 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Слияние нескольких файлов выставок с уже загруженными записями без повторов.
+ * <p>
+ * Записи сопоставляются по ключу из выбранных колонок (по умолчанию кличка, порода
+ * и владелец). Запись, ключ которой уже встречался, с совпадающими остальными
+ * полями считается повтором и пропускается; с отличающимися — конфликтом, который
+ * попадает в отчёт и разрешается по {@link Policy}. Повторы ищутся и между
+ * файлами, и внутри одного файла.
+ * <p>
+ * Файлы разбираются параллельно ({@link #read}), а затем сливаются по порядку
+ * ({@link #merge}), поэтому результат не зависит от того, какой файл прочитан первым.
+ * Индекс — хеш-таблица с открытой адресацией по кодам значений в словаре, так что
+ * проверка входящей записи не сравнивает строки и не создаёт объектов.
+ * Слияние не изменяет исходное хранилище: результат применяется к модели в EDT
+ * через {@link Result#apply}.
+ */
+final class DogMerge {
+    private static final Logger log = Logger.getLogger(DogMerge.class);
+    /** Ключ по умолчанию: одна и та же собака одного владельца. */
+    static final int[] DEFAULT_KEY = {DogRecordStore.NAME, DogRecordStore.BREED, DogRecordStore.OWNER};
+    private static final int EMPTY = -1;
+
+    /**
+     * Как разрешается конфликт: запись с тем же ключом, но другими значениями остальных полей.
+     */
+    enum Policy {
+        /** Оставить запись, встретившуюся раньше (загруженную или из предыдущего файла). */
+        KEEP_EXISTING,
+        /** Заменить значения записи значениями из последнего файла. */
+        REPLACE
+    }
+
+    private final DogRecordStore base;
+    private final int baseSize;
+    private final int[] keyColumns;
+    private final Policy policy;
+    /**
+     * Словарь слияния: первые коды совпадают с кодами словаря исходного хранилища,
+     * поэтому его записи индексируются без перекодирования.
+     */
+    private final StringPool pool;
+    /** Коды новых записей по колонкам; номер записи в индексе — {@code baseSize + i}. */
+    private int[][] added = new int[DogRecordStore.COLUMN_COUNT][1024];
+    private int addedCount;
+    /** Новые значения загруженных записей, заменённых при конфликте. */
+    private final Map<Integer, int[]> replaced = new HashMap<>();
+    /** Номера записей в индексе; {@link #EMPTY} — свободная ячейка. */
+    private int[] table;
+    private int indexed;
+    private final List<Conflict> conflicts = new ArrayList<>();
+    private final List<FileSummary> files = new ArrayList<>();
+    /** Перекодирование словаря последней порции в словарь слияния. */
+    private StringPool remapPool;
+    private int[] remap = new int[0];
+
+    private DogMerge(DogRecordStore base, int[] keyColumns, Policy policy) {
+        boolean[] used = new boolean[DogRecordStore.COLUMN_COUNT];
+        for (int column : keyColumns) {
+            if (column < 0 || column >= DogRecordStore.COLUMN_COUNT || used[column]) {
+                throw new IllegalArgumentException("Недопустимые колонки ключа: " + Arrays.toString(keyColumns));
+            }
+            used[column] = true;
+        }
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("Не выбраны колонки ключа");
+        }
+        this.base = base;
+        this.baseSize = base.size();
+        this.keyColumns = keyColumns.clone();
+        this.policy = policy;
+
+        StringPool basePool = base.pool();
+        int baseCodes = basePool.size();
+        pool = new StringPool(baseCodes + 1024);
+        for (int code = 0; code < baseCodes; code++) {
+            if (pool.intern(basePool.get(code)) != code) {
+                throw new IllegalStateException("Повторяющееся значение в словаре хранилища: " + basePool.get(code));
+            }
+        }
+        table = new int[tableSizeFor(baseSize + 1024)];
+        Arrays.fill(table, EMPTY);
+        for (int row = 0; row < baseSize; row++) {
+            // Повторы среди уже загруженных записей не трогаются: индексируется первая из них
+            int slot = find(row);
+            if (table[slot] == EMPTY) {
+                insert(slot, row);
+            }
+        }
+    }
+
+    /**
+     * Разбирает файлы параллельно; порядок результата совпадает с порядком файлов.
+     * При ошибке в одном из файлов разбор остальных отменяется.
+     *
+     * @param executor пул, в котором разбираются файлы; вызывающий поток
+     *                 не должен принадлежать этому пулу
+     */
+    static List<Source> read(List<Path> paths, Executor executor) throws Exception {
+        List<Future<Source>> futures = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            FutureTask<Source> task = new FutureTask<>(() -> Source.read(path));
+            futures.add(task);
+            executor.execute(task);
+        }
+        List<Source> sources = new ArrayList<>(paths.size());
+        try {
+            for (Future<Source> future : futures) {
+                sources.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            for (Future<Source> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Сливает разобранные файлы с записями хранилища по порядку файлов.
+     *
+     * @param base       исходные записи; не изменяются (в фоновом потоке — снимок модели)
+     * @param keyColumns колонки ключа, например {@link #DEFAULT_KEY}
+     */
+    static Result merge(DogRecordStore base, List<Source> sources, int[] keyColumns, Policy policy) {
+        long start = System.nanoTime();
+        DogMerge merge = new DogMerge(base, keyColumns, policy);
+        for (Source source : sources) {
+            merge.add(source);
+        }
+        Result result = merge.result(System.nanoTime() - start);
+        log.info("Слияние файлов: " + sources.size() + ", записей прочитано: " + result.readCount()
+                + ", добавлено: " + result.addedCount() + ", повторов: " + result.duplicateCount()
+                + ", конфликтов: " + result.conflicts.size() + " за " + result.mergeNanos / 1_000_000 + " мс");
+        return result;
+    }
+
+    private void add(Source source) {
+        FileSummary summary = new FileSummary(source.path);
+        long record = 0;
+        int[] codes = new int[DogRecordStore.COLUMN_COUNT];
+        for (DogBatch batch : source.batches) {
+            prepareRemap(batch.pool());
+            for (int i = 0; i < batch.size(); i++) {
+                record++;
+                for (int c = 0; c < codes.length; c++) {
+                    codes[c] = localCode(batch.code(i, c));
+                }
+                int row = addIncoming(codes);
+                if (row < 0) {
+                    summary.added++;
+                } else if (sameValues(row, codes)) {
+                    summary.duplicates++;
+                } else {
+                    summary.conflicts++;
+                    conflicts.add(new Conflict(source.path, record, row < baseSize ? row : -1,
+                            values(row), decode(codes), policy == Policy.REPLACE));
+                    if (policy == Policy.REPLACE) {
+                        replace(row, codes);
+                    }
+                }
+            }
+            summary.read += batch.size();
+        }
+        files.add(summary);
+    }
+
+    /**
+     * Добавляет запись, если её ключа ещё нет в индексе.
+     *
+     * @return -1, если запись добавлена, иначе номер записи с тем же ключом
+     */
+    private int addIncoming(int[] codes) {
+        int slot = probe(codes);
+        if (table[slot] != EMPTY) {
+            return table[slot];
+        }
+        if (addedCount == added[0].length) {
+            for (int c = 0; c < added.length; c++) {
+                added[c] = Arrays.copyOf(added[c], addedCount * 2);
+            }
+        }
+        for (int c = 0; c < added.length; c++) {
+            added[c][addedCount] = codes[c];
+        }
+        insert(slot, baseSize + addedCount++);
+        return -1;
+    }
+
+    private void replace(int row, int[] codes) {
+        if (row >= baseSize) {
+            for (int c = 0; c < added.length; c++) {
+                added[c][row - baseSize] = codes[c];
+            }
+        } else {
+            replaced.put(row, codes.clone());
+        }
+    }
+
+    /**
+     * Код значения записи индекса в словаре слияния.
+     */
+    private int code(int row, int column) {
+        if (row >= baseSize) {
+            return added[column][row - baseSize];
+        }
+        if (!replaced.isEmpty()) {
+            int[] codes = replaced.get(row);
+            if (codes != null) {
+                return codes[column];
+            }
+        }
+        return base.code(row, column);
+    }
+
+    private boolean sameValues(int row, int[] codes) {
+        for (int c = 0; c < codes.length; c++) {
+            if (code(row, c) != codes[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String[] values(int row) {
+        String[] values = new String[DogRecordStore.COLUMN_COUNT];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = pool.get(code(row, c));
+        }
+        return values;
+    }
+
+    private String[] decode(int[] codes) {
+        String[] values = new String[codes.length];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = pool.get(codes[c]);
+        }
+        return values;
+    }
+
+    /**
+     * Ячейка записи индекса с тем же ключом, что у {@code row}, или свободная ячейка.
+     */
+    private int find(int row) {
+        int mask = table.length - 1;
+        int slot = hash(row) & mask;
+        while (table[slot] != EMPTY && !sameKey(table[slot], row)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Ячейка записи индекса с ключом из {@code codes} или свободная ячейка.
+     */
+    private int probe(int[] codes) {
+        int hash = 0;
+        for (int column : keyColumns) {
+            hash = hash * 31 + codes[column];
+        }
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != EMPTY) {
+            int row = table[slot];
+            boolean same = true;
+            for (int k = 0; k < keyColumns.length && same; k++) {
+                same = code(row, keyColumns[k]) == codes[keyColumns[k]];
+            }
+            if (same) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean sameKey(int a, int b) {
+        for (int column : keyColumns) {
+            if (code(a, column) != code(b, column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(int row) {
+        int hash = 0;
+        for (int column : keyColumns) {
+            hash = hash * 31 + code(row, column);
+        }
+        return mix(hash);
+    }
+
+    private void insert(int slot, int row) {
+        table[slot] = row;
+        if (++indexed * 2 > table.length) {
+            // Ключи записей не меняются при замене значений, поэтому их можно переложить
+            int[] old = table;
+            table = new int[old.length * 2];
+            Arrays.fill(table, EMPTY);
+            int mask = table.length - 1;
+            for (int indexedRow : old) {
+                if (indexedRow != EMPTY) {
+                    int newSlot = hash(indexedRow) & mask;
+                    while (table[newSlot] != EMPTY) {
+                        newSlot = (newSlot + 1) & mask;
+                    }
+                    table[newSlot] = indexedRow;
+                }
+            }
+        }
+    }
+
+    /**
+     * Готовит перекодирование словаря порции; порции одного файла могут иметь общий словарь.
+     */
+    private void prepareRemap(StringPool local) {
+        if (local != remapPool) {
+            remapPool = local;
+            remap = new int[Math.max(16, local.size())];
+            Arrays.fill(remap, EMPTY);
+        } else if (local.size() > remap.length) {
+            int oldLength = remap.length;
+            remap = Arrays.copyOf(remap, local.size());
+            Arrays.fill(remap, oldLength, remap.length, EMPTY);
+        }
+    }
+
+    private int localCode(int code) {
+        int mapped = remap[code];
+        if (mapped == EMPTY) {
+            mapped = pool.intern(remapPool.get(code));
+            remap[code] = mapped;
+        }
+        return mapped;
+    }
+
+    private Result result(long nanos) {
+        DogBatch batch = new DogBatch(pool, added, addedCount);
+        int[] rows = new int[replaced.size()];
+        int i = 0;
+        for (Integer row : replaced.keySet()) {
+            rows[i++] = row;
+        }
+        Arrays.sort(rows);
+        String[][] values = new String[rows.length][];
+        for (i = 0; i < rows.length; i++) {
+            values[i] = decode(replaced.get(rows[i]));
+        }
+        return new Result(baseSize, batch, rows, values, files, conflicts, nanos);
+    }
+
+    /**
+     * Перемешивает биты хеша: коды значений идут подряд, и без перемешивания
+     * ключи соседних записей попадали бы в соседние ячейки таблицы.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSizeFor(int rows) {
+        int size = 16;
+        while (size < rows * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Разобранный файл: его записи порциями в порядке файла.
+     * Если рядом с файлом есть журнал изменений, записи берутся с учётом сохранённых
+     * в нём правок, как при открытии файла; номера записей в отчёте тогда относятся
+     * к записям после применения журнала.
+     */
+    static final class Source {
+        final Path path;
+        final List<DogBatch> batches;
+
+        Source(Path path, List<DogBatch> batches) {
+            this.path = path;
+            this.batches = batches;
+        }
+
+        static Source read(Path path) throws Exception {
+            List<DogBatch> batches = new ArrayList<>();
+            SnapshotInfo snapshot = DogSnapshotFormat.of(path).read(path, batch -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Разбор файла прерван: " + path);
+                }
+                batches.add(batch);
+            });
+            return new Source(path, DogJournal.applyCommitted(path, snapshot, batches));
+        }
+    }
+
+    /**
+     * Итоги слияния одного файла.
+     */
+    static final class FileSummary {
+        final Path path;
+        long read;
+        long added;
+        long duplicates;
+        long conflicts;
+
+        FileSummary(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Запись файла, ключ которой совпал с ключом другой записи при других значениях полей.
+     */
+    static final class Conflict {
+        final Path path;
+        /** Порядковый номер записи в файле, начиная с 1. */
+        final long record;
+        /** Номер загруженной записи в модели или -1, если запись добавлена из предыдущего файла. */
+        final int row;
+        final String[] existing;
+        final String[] incoming;
+        /** Заменены ли значения записи входящими. */
+        final boolean replaced;
+
+        Conflict(Path path, long record, int row, String[] existing, String[] incoming, boolean replaced) {
+            this.path = path;
+            this.record = record;
+            this.row = row;
+            this.existing = existing;
+            this.incoming = incoming;
+            this.replaced = replaced;
+        }
+    }
+
+    /**
+     * Результат слияния: новые записи, заменённые значения загруженных записей и отчёт.
+     */
+    static final class Result {
+        private final int baseSize;
+        private final DogBatch added;
+        private final int[] replacedRows;
+        private final String[][] replacedValues;
+        final List<FileSummary> files;
+        final List<Conflict> conflicts;
+        final long mergeNanos;
+
+        Result(int baseSize, DogBatch added, int[] replacedRows, String[][] replacedValues,
+               List<FileSummary> files, List<Conflict> conflicts, long mergeNanos) {
+            this.baseSize = baseSize;
+            this.added = added;
+            this.replacedRows = replacedRows;
+            this.replacedValues = replacedValues;
+            this.files = Collections.unmodifiableList(files);
+            this.conflicts = Collections.unmodifiableList(conflicts);
+            this.mergeNanos = mergeNanos;
+        }
+
+        /**
+         * Применяет результат к модели одним событием на добавление и одним на замену;
+         * вызывается в EDT, пока модель содержит те же записи, что и при слиянии.
+         */
+        void apply(DogTableModel tableModel) {
+            if (tableModel.getRowCount() != baseSize) {
+                throw new IllegalStateException("Записи модели изменились после слияния");
+            }
+            tableModel.setRows(replacedRows, replacedValues);
+            tableModel.addBatches(Collections.singletonList(added));
+        }
+
+        /**
+         * Применяет результат к хранилищу, например в пакетном режиме.
+         */
+        void apply(DogRecordStore store) {
+            if (store.size() != baseSize) {
+                throw new IllegalStateException("Записи хранилища изменились после слияния");
+            }
+            for (int i = 0; i < replacedRows.length; i++) {
+                for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                    store.set(replacedRows[i], c, replacedValues[i][c]);
+                }
+            }
+            store.addAll(added);
+        }
+
+        long readCount() {
+            long read = 0;
+            for (FileSummary file : files) {
+                read += file.read;
+            }
+            return read;
+        }
+
+        int addedCount() {
+            return added.size();
+        }
+
+        /**
+         * Сколько загруженных записей заменено значениями из файлов.
+         */
+        int replacedCount() {
+            return replacedRows.length;
+        }
+
+        long duplicateCount() {
+            long duplicates = 0;
+            for (FileSummary file : files) {
+                duplicates += file.duplicates;
+            }
+            return duplicates;
+        }
+
+        /**
+         * Отчёт о слиянии: итоги по файлам и список конфликтов.
+         *
+         * @param conflictLimit сколько конфликтов перечислить; об остальных сообщается числом
+         */
+        String report(int conflictLimit) {
+            String[] titles = DogRecordStore.columnTitles();
+            String separator = System.lineSeparator();
+            StringBuilder report = new StringBuilder();
+            report.append("Прочитано записей: ").append(readCount())
+                    .append(", добавлено: ").append(addedCount())
+                    .append(", повторов: ").append(duplicateCount())
+                    .append(", конфликтов: ").append(conflicts.size())
+                    .append(" (заменено записей: ").append(replacedCount()).append(')').append(separator);
+            for (FileSummary file : files) {
+                report.append("  ").append(file.path.getFileName())
+                        .append(": прочитано ").append(file.read)
+                        .append(", добавлено ").append(file.added)
+                        .append(", повторов ").append(file.duplicates)
+                        .append(", конфликтов ").append(file.conflicts).append(separator);
+            }
+            if (conflicts.isEmpty()) {
+                return report.toString();
+            }
+            report.append(separator).append("Конфликты:").append(separator);
+            int shown = Math.min(conflictLimit, conflicts.size());
+            for (int i = 0; i < shown; i++) {
+                Conflict conflict = conflicts.get(i);
+                report.append(conflict.path.getFileName()).append(", запись ").append(conflict.record)
+                        .append(conflict.row >= 0 ? ", строка " + (conflict.row + 1) : ", из предыдущего файла")
+                        .append(conflict.replaced ? " — заменено" : " — оставлено прежнее").append(':');
+                for (int c = 0; c < titles.length; c++) {
+                    boolean differs = !conflict.existing[c].equals(conflict.incoming[c]);
+                    report.append(c == 0 ? " " : "; ").append(titles[c]).append(" «").append(conflict.existing[c]);
+                    if (differs) {
+                        report.append("» → «").append(conflict.incoming[c]);
+                    }
+                    report.append('»');
+                }
+                report.append(separator);
+            }
+            if (shown < conflicts.size()) {
+                report.append("... и ещё конфликтов: ").append(conflicts.size() - shown).append(separator);
+            }
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Список собак в формате NDJSON: по объекту JSON на строку, например
+ * {@code {"name":"Рекс","breed":"Овчарка","owner":"Иванов","judge":"Петров","award":"Золото"}}.
+ * <p>
+ * При чтении поля сопоставляются по именам ({@link DogCsvFormat#FIELD_NAMES}) в любом порядке;
+ * недостающие поля и {@code null} дают пустое значение, числа и логические значения
+ * берутся текстом, а прочие поля, в том числе вложенные объекты и массивы, пропускаются.
+ * Объекты могут разделяться любыми пробельными символами. Разбор потоковый и не создаёт
+ * строк для уже встречавшихся значений.
+ */
+final class DogNdjsonFormat {
+    private static final Logger log = Logger.getLogger(DogNdjsonFormat.class);
+    /** Расширения файлов в формате NDJSON. */
+    static final String[] EXTENSIONS = {".ndjson", ".jsonl"};
+    /** Поле, значение которого не сохраняется. */
+    private static final int SKIP = -1;
+    /** Буфер имени поля. */
+    private static final int KEY = DogRecordStore.COLUMN_COUNT;
+    private static final char[][] FIELD_NAMES = new char[DogRecordStore.COLUMN_COUNT][];
+
+    static {
+        for (int c = 0; c < FIELD_NAMES.length; c++) {
+            FIELD_NAMES[c] = DogCsvFormat.FIELD_NAMES[c].toCharArray();
+        }
+    }
+
+    private DogNdjsonFormat() {
+    }
+
+    /**
+     * Подходит ли расширение файла этому формату.
+     */
+    static boolean hasExtension(Path path) {
+        String name = path.getFileName().toString();
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Читает файл и передаёт записи обработчику порциями.
+     *
+     * @return размер и контрольная сумма файла
+     */
+    static SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+        try (ChannelTextReader in = ChannelTextReader.open(path)) {
+            new Parser(path, in, handler).parse();
+            return new SnapshotInfo(in.bytesRead(), in.checksum());
+        }
+    }
+
+    /**
+     * Сохраняет записи в NDJSON: потоково, через временный файл с атомарной заменой.
+     *
+     * @return размер и контрольная сумма записанного файла
+     */
+    static SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+        long start = System.nanoTime();
+        int rowCount = store.size();
+        CRC32 crc = new CRC32();
+        long bytes = AtomicFileWriter.write(path, channel -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), StandardCharsets.UTF_8), 64 * 1024);
+            for (int row = 0; row < rowCount; row++) {
+                for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                    out.write(c == 0 ? "{\"" : ",\"");
+                    out.write(DogCsvFormat.FIELD_NAMES[c]);
+                    out.write("\":\"");
+                    writeEscaped(out, store.get(row, c));
+                    out.write('"');
+                }
+                out.write("}\n");
+            }
+            out.flush();
+        });
+
+        long elapsedNs = Math.max(1, System.nanoTime() - start);
+        log.info(String.format("Сохранено записей: %d (%d байт, NDJSON) за %d мс, %.1f МБ/с",
+                rowCount, bytes, elapsedNs / 1_000_000, bytes * 1e9 / elapsedNs / (1024 * 1024)));
+        return new SnapshotInfo(bytes, crc.getValue());
+    }
+
+    private static void writeEscaped(Writer out, String value) throws IOException {
+        int plain = 0; // начало участка, не требующего экранирования
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20) {
+                replacement = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            out.write(value, plain, i - plain);
+            out.write(replacement);
+            plain = i + 1;
+        }
+        out.write(value, plain, value.length() - plain);
+    }
+
+    /**
+     * Потоковый разборщик одного файла.
+     */
+    private static final class Parser {
+        private final Path path;
+        private final ChannelTextReader in;
+        private final DogXmlReader.ChunkHandler handler;
+        /** Значения колонок и, под номером {@link #KEY}, имя текущего поля. */
+        private final TextRecordBuffer fields = new TextRecordBuffer(DogRecordStore.COLUMN_COUNT + 1);
+        private final char[][] columnValues = new char[DogRecordStore.COLUMN_COUNT][];
+        private final int[] columnLengths = new int[DogRecordStore.COLUMN_COUNT];
+        private DogBatch batch = new DogBatch(DogXmlReader.DEFAULT_CHUNK_SIZE);
+        private long line = 1;
+
+        Parser(Path path, ChannelTextReader in, DogXmlReader.ChunkHandler handler) {
+            this.path = path;
+            this.in = in;
+            this.handler = handler;
+        }
+
+        void parse() throws Exception {
+            int c;
+            while ((c = skipWhitespace(in.read())) >= 0) {
+                if (c != '{') {
+                    throw error("ожидался объект JSON");
+                }
+                fields.clear();
+                readObject();
+                for (int column = 0; column < DogRecordStore.COLUMN_COUNT; column++) {
+                    columnValues[column] = fields.value(column);
+                    columnLengths[column] = fields.length(column);
+                }
+                batch.add(columnValues, columnLengths);
+                if (batch.size() == DogXmlReader.DEFAULT_CHUNK_SIZE) {
+                    handler.onChunk(batch);
+                    batch = new DogBatch(DogXmlReader.DEFAULT_CHUNK_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                handler.onChunk(batch);
+            }
+        }
+
+        /**
+         * Читает поля объекта после открывающей скобки.
+         */
+        private void readObject() throws IOException {
+            int c = skipWhitespace(in.read());
+            if (c == '}') {
+                return;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw error("ожидалось имя поля");
+                }
+                fields.clear(KEY);
+                readString(KEY);
+                if (skipWhitespace(in.read()) != ':') {
+                    throw error("ожидалось «:» после имени поля");
+                }
+                c = readValue(skipWhitespace(in.read()), column());
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw error("ожидалась «,» или «}»");
+                }
+                c = skipWhitespace(in.read());
+            }
+        }
+
+        /**
+         * Читает значение поля, начинающееся символом {@code c}.
+         *
+         * @param target колонка для значения или {@link #SKIP}
+         * @return первый непробельный символ после значения
+         */
+        private int readValue(int c, int target) throws IOException {
+            if (target != SKIP) {
+                fields.clear(target); // повторное поле заменяет прежнее значение
+            }
+            if (c == '"') {
+                readString(target);
+                return skipWhitespace(in.read());
+            }
+            if (c == '{' || c == '[') {
+                if (target != SKIP) {
+                    throw error("значение поля «" + fields.toString(KEY) + "» должно быть строкой");
+                }
+                return skipNested();
+            }
+            if (c < 0) {
+                throw error("неожиданный конец файла");
+            }
+            // null, число или логическое значение — до разделителя
+            while (c >= 0 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+                if (target != SKIP) {
+                    fields.append(target, (char) c);
+                }
+                c = in.read();
+            }
+            if (target != SKIP && fields.length(target) == 4 && isNull(fields.value(target))) {
+                fields.clear(target);
+            }
+            return skipWhitespace(c);
+        }
+
+        /**
+         * Читает строку после открывающей кавычки.
+         *
+         * @param target буфер для значения или {@link #SKIP}
+         */
+        private void readString(int target) throws IOException {
+            while (true) {
+                int c = in.read();
+                if (c < 0) {
+                    throw error("незакрытая строка");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    c = unescape();
+                } else if (c == '\n') {
+                    line++;
+                }
+                if (target != SKIP) {
+                    fields.append(target, (char) c);
+                }
+            }
+        }
+
+        private int unescape() throws IOException {
+            int c = in.read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    return c;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(in.read(), 16);
+                        if (digit < 0) {
+                            throw error("недопустимая последовательность \\u");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    return code;
+                default:
+                    throw error("недопустимая escape-последовательность");
+            }
+        }
+
+        /**
+         * Пропускает вложенный объект или массив после открывающей скобки.
+         *
+         * @return первый непробельный символ после него
+         */
+        private int skipNested() throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int c = in.read();
+                if (c < 0) {
+                    throw error("неожиданный конец файла");
+                }
+                if (c == '"') {
+                    readString(SKIP);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == '\n') {
+                    line++;
+                }
+            }
+            return skipWhitespace(in.read());
+        }
+
+        /**
+         * Колонка, соответствующая прочитанному имени поля, или {@link #SKIP}.
+         */
+        private int column() {
+            char[] key = fields.value(KEY);
+            int length = fields.length(KEY);
+            for (int c = 0; c < FIELD_NAMES.length; c++) {
+                char[] name = FIELD_NAMES[c];
+                if (name.length == length && regionEquals(name, key, length)) {
+                    return c;
+                }
+            }
+            return SKIP;
+        }
+
+        private int skipWhitespace(int c) throws IOException {
+            while (isWhitespace(c)) {
+                if (c == '\n') {
+                    line++;
+                }
+                c = in.read();
+            }
+            return c;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Ошибка NDJSON в строке " + line + " файла " + path + ": " + message);
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static boolean isNull(char[] value) {
+            return value[0] == 'n' && value[1] == 'u' && value[2] == 'l' && value[3] == 'l';
+        }
+
+        private static boolean regionEquals(char[] a, char[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.util.Arrays;
+
+/**
+ * Колоночное хранилище записей о собаках.
+ * Каждая колонка хранится массивом {@code int}, значения кодируются через
+ * общий словарь строк {@link StringPool}, поэтому повторяющиеся породы, судьи,
+ * владельцы и награды занимают память один раз.
+ * <p>
+ * Изменять хранилище может только один поток (EDT). Другие потоки работают
+ * с неизменяемыми снимками ({@link #snapshot()}): снимок разделяет массивы колонок
+ * с хранилищем, а хранилище копирует их перед первым изменением после снимка
+ * (копирование при записи). Поэтому снимок создаётся мгновенно и не требует блокировок.
+ */
+class DogRecordStore {
+    static final int NAME = 0;
+    static final int BREED = 1;
+    static final int OWNER = 2;
+    static final int JUDGE = 3;
+    static final int AWARD = 4;
+    static final int COLUMN_COUNT = 5;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final String[] COLUMN_TITLES = {"Кличка", "Порода", "Владелец", "Судья", "Награды"};
+
+    private StringPool pool = new StringPool();
+    private int[][] columns = new int[COLUMN_COUNT][INITIAL_CAPACITY];
+    private int size;
+    /** Массивы колонок используются снимком и должны быть скопированы перед изменением. */
+    private boolean shared;
+    /** Хранилище является снимком и не изменяется. */
+    private boolean frozen;
+
+    /**
+     * Заголовки колонок таблицы — они же имена полей отчёта.
+     */
+    static String[] columnTitles() {
+        return COLUMN_TITLES.clone();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает значение ячейки.
+     */
+    public String get(int row, int column) {
+        checkRow(row);
+        return pool.get(columns[column][row]);
+    }
+
+    /**
+     * Возвращает код значения ячейки в словаре {@link #pool()}.
+     */
+    public int code(int row, int column) {
+        checkRow(row);
+        return columns[column][row];
+    }
+
+    /**
+     * Колонка кодов целиком; действительны первые {@link #size()} элементов.
+     * Массив не копируется, поэтому изменять его нельзя.
+     */
+    int[] column(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Общий словарь строк хранилища.
+     */
+    public StringPool pool() {
+        return pool;
+    }
+
+    /**
+     * Возвращает запись в формате {name, breed, owner, judge, award}.
+     */
+    public String[] getRow(int row) {
+        checkRow(row);
+        String[] values = new String[COLUMN_COUNT];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            values[c] = pool.get(columns[c][row]);
+        }
+        return values;
+    }
+
+    /**
+     * Изменяет значение ячейки.
+     */
+    public void set(int row, int column, String value) {
+        checkRow(row);
+        beforeWrite();
+        columns[column][row] = pool.intern(value);
+    }
+
+    /**
+     * Добавляет запись в формате {name, breed, owner, judge, award}.
+     */
+    public void add(String[] row) {
+        beforeWrite();
+        ensureCapacity(size + 1);
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            columns[c][size] = pool.intern(row[c]);
+        }
+        size++;
+    }
+
+    /**
+     * Добавляет порцию записей, перекодируя её локальный словарь в общий.
+     * В пустое хранилище порция добавляется без перекодирования: её словарь
+     * становится общим (порция после добавления больше не используется).
+     */
+    public void addAll(DogBatch batch) {
+        int count = batch.size();
+        beforeWrite();
+        ensureCapacity(size + count);
+        StringPool local = batch.pool();
+        if (size == 0 && pool.size() == 0) {
+            pool = local;
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                for (int i = 0; i < count; i++) {
+                    columns[c][i] = batch.code(i, c);
+                }
+            }
+            size = count;
+            return;
+        }
+        int[] remap = new int[local.size()];
+        for (int code = 0; code < remap.length; code++) {
+            remap[code] = pool.intern(local.get(code));
+        }
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            int[] column = columns[c];
+            for (int i = 0; i < count; i++) {
+                column[size + i] = remap[batch.code(i, c)];
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Удаляет запись со сдвигом последующих.
+     */
+    public void remove(int row) {
+        checkRow(row);
+        beforeWrite();
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            System.arraycopy(columns[c], row + 1, columns[c], row, size - row - 1);
+        }
+        size--;
+    }
+
+    /**
+     * Удаляет несколько записей за один проход: оставшиеся записи сдвигаются
+     * к началу по одному разу, независимо от числа удаляемых.
+     *
+     * @param rows номера записей по возрастанию, без повторов
+     */
+    public void removeAll(int[] rows) {
+        if (rows.length == 0) {
+            return;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            checkRow(rows[i]);
+            if (i > 0 && rows[i] <= rows[i - 1]) {
+                throw new IllegalArgumentException("Номера строк должны возрастать: " + rows[i - 1] + ", " + rows[i]);
+            }
+        }
+        beforeWrite();
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            int[] column = columns[c];
+            int target = rows[0];
+            int next = 0; // следующая удаляемая запись
+            for (int row = rows[0]; row < size; row++) {
+                if (next < rows.length && rows[next] == row) {
+                    next++;
+                } else {
+                    column[target++] = column[row];
+                }
+            }
+        }
+        size -= rows.length;
+    }
+
+    /**
+     * Устанавливает одно значение колонки в нескольких записях.
+     */
+    public void setAll(int[] rows, int column, String value) {
+        for (int row : rows) {
+            checkRow(row);
+        }
+        beforeWrite();
+        int code = pool.intern(value);
+        int[] values = columns[column];
+        for (int row : rows) {
+            values[row] = code;
+        }
+    }
+
+    /**
+     * Удаляет все записи и сбрасывает словарь.
+     */
+    public void clear() {
+        checkWritable();
+        shared = false; // снимок сохраняет старые массивы, хранилище получает новые
+        pool = new StringPool();
+        columns = new int[COLUMN_COUNT][INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок текущего состояния за O(1). Снимок можно читать
+     * из любого потока; изменения хранилища после снимка в нём не видны. Словарь общий:
+     * он только пополняется, и все коды снимка в нём уже есть.
+     */
+    public DogRecordStore snapshot() {
+        if (frozen) {
+            return this;
+        }
+        DogRecordStore snapshot = new DogRecordStore();
+        snapshot.pool = pool;
+        snapshot.columns = columns.clone();
+        snapshot.size = size;
+        snapshot.frozen = true;
+        shared = true;
+        return snapshot;
+    }
+
+    /**
+     * Возвращает новое хранилище из выбранных записей с тем же словарём.
+     *
+     * @param rows номера записей в нужном порядке
+     */
+    public DogRecordStore select(int[] rows) {
+        DogRecordStore selection = new DogRecordStore();
+        selection.pool = pool;
+        selection.ensureCapacity(rows.length);
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            int[] source = columns[c];
+            int[] target = selection.columns[c];
+            for (int i = 0; i < rows.length; i++) {
+                checkRow(rows[i]);
+                target[i] = source[rows[i]];
+            }
+        }
+        selection.size = rows.length;
+        return selection;
+    }
+
+    /**
+     * Приблизительный объём памяти хранилища в байтах (колонки и словарь).
+     */
+    public long memoryFootprint() {
+        long columnBytes = 0;
+        for (int[] column : columns) {
+            columnBytes += 16 + 4L * column.length;
+        }
+        return columnBytes + pool.memoryFootprint();
+    }
+
+    /**
+     * Готовит хранилище к изменению: копирует массивы колонок, если их использует снимок.
+     */
+    private void beforeWrite() {
+        checkWritable();
+        if (shared) {
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                columns[c] = columns[c].clone();
+            }
+            shared = false;
+        }
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Снимок хранилища нельзя изменять");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= columns[0].length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, columns[0].length + (columns[0].length >> 1));
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            columns[c] = Arrays.copyOf(columns[c], newCapacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне диапазона 0.." + (size - 1));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+
+/**
+ * Источник данных отчёта, читающий записи напрямую из хранилища.
+ * <p>
+ * В отличие от {@code JRTableModelDataSource} не обращается к Swing-модели и не создаёт
+ * объектов на строку: значения берутся из словаря хранилища по мере заполнения отчёта.
+ * Поля отчёта сопоставляются с колонками по именам колонок таблицы.
+ */
+class DogReportDataSource implements JRDataSource {
+    private final DogRecordStore store;
+    private final int[] rows;
+    private final Map<String, Integer> columnsByName = new HashMap<>();
+    private int position = -1;
+    private int row;
+
+    /**
+     * @param store       записи для отчёта; не должны изменяться во время заполнения
+     * @param columnNames имена колонок, совпадающие с именами полей отчёта
+     */
+    public DogReportDataSource(DogRecordStore store, String[] columnNames) {
+        this(store, null, columnNames);
+    }
+
+    /**
+     * @param rows номера записей хранилища, попадающих в отчёт, или {@code null} для всех
+     */
+    public DogReportDataSource(DogRecordStore store, int[] rows, String[] columnNames) {
+        this.store = store;
+        this.rows = rows;
+        for (int c = 0; c < columnNames.length; c++) {
+            columnsByName.put(columnNames[c], c);
+        }
+    }
+
+    @Override
+    public boolean next() {
+        if (position + 1 >= (rows == null ? store.size() : rows.length)) {
+            return false;
+        }
+        position++;
+        row = rows == null ? position : rows[position];
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        Integer column = columnsByName.get(field.getName());
+        if (column == null) {
+            throw new JRException("Неизвестное поле отчёта: " + field.getName());
+        }
+        return store.get(row, column);
+    }
+}
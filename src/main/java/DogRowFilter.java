@@ -0,0 +1,84 @@
+import javax.swing.RowFilter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Фильтр строк по нескольким колонкам одновременно (условия объединяются через «И»):
+ * значение каждой указанной колонки должно содержать заданную подстроку без учёта регистра.
+ * <p>
+ * Подстрока проверяется один раз для каждого различного значения словаря, а результат
+ * запоминается по коду, поэтому проверка строки сводится к чтению битов.
+ */
+class DogRowFilter extends RowFilter<DogTableModel, Integer> {
+    private final DogRecordStore store;
+    private final List<Criterion> criteria = new ArrayList<>();
+
+    public DogRowFilter(DogRecordStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Добавляет условие «колонка содержит текст»; пустой текст игнорируется.
+     *
+     * @return этот же фильтр
+     */
+    public DogRowFilter contains(int column, String text) {
+        String query = text.trim().toLowerCase(Locale.ROOT);
+        if (!query.isEmpty()) {
+            criteria.add(new Criterion(column, query));
+        }
+        return this;
+    }
+
+    /**
+     * @return {@code true}, если не задано ни одного условия
+     */
+    public boolean isEmpty() {
+        return criteria.isEmpty();
+    }
+
+    @Override
+    public boolean include(Entry<? extends DogTableModel, ? extends Integer> entry) {
+        int row = entry.getIdentifier();
+        StringPool pool = store.pool();
+        for (Criterion criterion : criteria) {
+            if (!criterion.test(pool, store.code(row, criterion.column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Условие на одну колонку с запомненными результатами по кодам словаря.
+     */
+    private static final class Criterion {
+        final int column;
+        final String query;
+        private StringPool checkedPool;
+        private final BitSet checked = new BitSet();
+        private final BitSet matched = new BitSet();
+
+        Criterion(int column, String query) {
+            this.column = column;
+            this.query = query;
+        }
+
+        boolean test(StringPool pool, int code) {
+            if (pool != checkedPool) {
+                checkedPool = pool;
+                checked.clear();
+                matched.clear();
+            }
+            if (!checked.get(code)) {
+                checked.set(code);
+                if (pool.get(code).toLowerCase(Locale.ROOT).contains(query)) {
+                    matched.set(code);
+                }
+            }
+            return matched.get(code);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import javax.swing.DefaultRowSorter;
+import javax.swing.table.TableRowSorter;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Сортировка и фильтрация представления таблицы собак без копирования модели.
+ * <p>
+ * Вместо строк сортировщик сравнивает заранее вычисленные ранги: для каждого
+ * различного значения словаря хранилища один раз строится ключ сопоставления
+ * ({@link CollationKey}), значения упорядочиваются по ключам, и ячейка
+ * сравнивается по целочисленному рангу своего значения — без {@code toLowerCase()}
+ * и без обращения к {@link Collator} на каждом сравнении.
+ */
+class DogRowSorter extends TableRowSorter<DogTableModel> {
+    private static final Comparator<Integer> RANK_ORDER = Comparator.naturalOrder();
+
+    public DogRowSorter(DogTableModel model) {
+        super(model);
+    }
+
+    @Override
+    public void setModel(DogTableModel model) {
+        super.setModel(model);
+        setModelWrapper(new RankModelWrapper(model));
+    }
+
+    @Override
+    public Comparator<?> getComparator(int column) {
+        return RANK_ORDER;
+    }
+
+    @Override
+    protected boolean useToString(int column) {
+        return false;
+    }
+
+    /**
+     * Отдаёт сортировщику ранги значений вместо самих значений ячеек.
+     */
+    private static final class RankModelWrapper extends DefaultRowSorter.ModelWrapper<DogTableModel, Integer> {
+        private final DogTableModel model;
+        private final Collator collator = Collator.getInstance(new Locale("ru", "RU"));
+        private StringPool rankedPool;
+        private CollationKey[] keys = new CollationKey[0];
+        private Integer[] ranks = new Integer[0];
+        private int rankedCount;
+
+        RankModelWrapper(DogTableModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public DogTableModel getModel() {
+            return model;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return model.getColumnCount();
+        }
+
+        @Override
+        public int getRowCount() {
+            return model.getRowCount();
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            DogRecordStore store = model.store();
+            int code = store.code(row, column);
+            if (code >= rankedCount || store.pool() != rankedPool) {
+                updateRanks();
+            }
+            return ranks[code];
+        }
+
+        @Override
+        public String getStringValueAt(int row, int column) {
+            return model.store().get(row, column);
+        }
+
+        @Override
+        public Integer getIdentifier(int row) {
+            return row;
+        }
+
+        /**
+         * Строит ключи для новых значений словаря и пересчитывает ранги всех значений.
+         */
+        private void updateRanks() {
+            StringPool pool = model.store().pool();
+            if (pool != rankedPool) {
+                rankedPool = pool;
+                rankedCount = 0;
+            }
+            int size = pool.size();
+            if (size > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(size, keys.length * 2));
+            }
+            for (int code = rankedCount; code < size; code++) {
+                keys[code] = collator.getCollationKey(pool.get(code));
+            }
+            Integer[] order = new Integer[size];
+            for (int code = 0; code < size; code++) {
+                order[code] = code;
+            }
+            final CollationKey[] sortedKeys = keys;
+            Arrays.sort(order, (a, b) -> sortedKeys[a].compareTo(sortedKeys[b]));
+            Integer[] newRanks = new Integer[keys.length];
+            int rank = 0;
+            for (int i = 0; i < size; i++) {
+                // Совпадающие по ключу значения получают одинаковый ранг
+                if (i > 0 && sortedKeys[order[i]].compareTo(sortedKeys[order[i - 1]]) != 0) {
+                    rank = i;
+                }
+                newRanks[order[i]] = rank;
+            }
+            ranks = newRanks;
+            rankedCount = size;
+        }
+    }
+}
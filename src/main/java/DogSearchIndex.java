@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Поисковый индекс по подстроке для {@link DogRecordStore}.
+ * <p>
+ * Индексируются не строки таблицы, а различные значения словаря хранилища:
+ * для каждого значения хранится его копия в нижнем регистре и триграммы.
+ * Поиск сначала находит коды подходящих значений (по пересечению триграмм),
+ * затем один раз проходит по целочисленной колонке. Новые значения словаря
+ * индексируются при следующем поиске, а добавление, изменение и удаление строк
+ * не требуют перестройки, так как колонки читаются напрямую. Поиск из фонового
+ * потока выполняется по снимку хранилища ({@link DogRecordStore#snapshot()}).
+ */
+class DogSearchIndex {
+    /** Как часто (в строках) проверять прерывание потока. */
+    private static final int CANCEL_CHECK_MASK = 0xFFFF;
+
+    private StringPool indexedPool;
+    private int indexedCount;
+    private String[] lowerValues = new String[0];
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+
+    /** Признак совпадения по коду словаря; переиспользуется между запросами. */
+    private boolean[] matches = new boolean[0];
+    private int[] matchedCodes = new int[0];
+    private int matchedCount;
+
+    /**
+     * Ищет строки, у которых значение в колонке содержит текст (без учёта регистра).
+     *
+     * @param store хранилище или его снимок; из потока, отличного от EDT, — только снимок
+     * @return номера найденных строк по возрастанию или {@code null}, если поток был прерван
+     */
+    public synchronized int[] search(DogRecordStore store, int column, String text) {
+        int[] values = store.column(column);
+        int rowCount = Math.min(store.size(), values.length);
+        if (!prepare(store.pool(), text)) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (isMatch(values[row])) {
+                count++;
+            }
+            if ((row & CANCEL_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+        }
+        int[] rows = new int[count];
+        int next = 0;
+        for (int row = 0; row < rowCount && next < count; row++) {
+            if (isMatch(values[row])) {
+                rows[next++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Уточняет результат предыдущего поиска: проверяет только строки-кандидаты.
+     * Используется, когда новый запрос продолжает предыдущий.
+     *
+     * @param candidates номера строк по возрастанию
+     * @return номера найденных строк по возрастанию или {@code null}, если поток был прерван
+     */
+    public synchronized int[] refine(DogRecordStore store, int column, String text, int[] candidates) {
+        int[] values = store.column(column);
+        int rowCount = Math.min(store.size(), values.length);
+        if (!prepare(store.pool(), text)) {
+            return new int[0];
+        }
+        int[] rows = new int[candidates.length];
+        int count = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            int row = candidates[i];
+            if (row < rowCount && isMatch(values[row])) {
+                rows[count++] = row;
+            }
+            if ((i & CANCEL_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Подготавливает набор подходящих кодов словаря.
+     *
+     * @return {@code false}, если ни одно значение не подходит
+     */
+    private boolean prepare(StringPool pool, String text) {
+        sync(pool);
+        findCodes(text.toLowerCase(Locale.ROOT));
+        return matchedCount > 0;
+    }
+
+    private boolean isMatch(int code) {
+        return code < matches.length && matches[code];
+    }
+
+    /**
+     * Отмечает в {@link #matches} коды значений, содержащих запрос.
+     */
+    private void findCodes(String query) {
+        for (int i = 0; i < matchedCount; i++) {
+            matches[matchedCodes[i]] = false;
+        }
+        matchedCount = 0;
+        if (query.length() < 3) {
+            for (int code = 0; code < indexedCount; code++) {
+                if (lowerValues[code].contains(query)) {
+                    mark(code);
+                }
+            }
+            return;
+        }
+        Postings shortest = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings postings = trigrams.get(trigram(query, i));
+            if (postings == null) {
+                return;
+            }
+            if (shortest == null || postings.size < shortest.size) {
+                shortest = postings;
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            int code = shortest.codes[i];
+            if (lowerValues[code].contains(query)) {
+                mark(code);
+            }
+        }
+    }
+
+    private void mark(int code) {
+        matches[code] = true;
+        matchedCodes[matchedCount++] = code;
+    }
+
+    /**
+     * Добавляет в индекс значения, появившиеся в словаре с момента прошлого поиска.
+     */
+    private void sync(StringPool pool) {
+        if (pool != indexedPool) {
+            indexedPool = pool;
+            indexedCount = 0;
+            trigrams.clear();
+            matchedCount = 0;
+            Arrays.fill(matches, false);
+        }
+        int poolSize = pool.size();
+        if (poolSize == indexedCount) {
+            return;
+        }
+        if (poolSize > lowerValues.length) {
+            int capacity = Math.max(poolSize, lowerValues.length * 2);
+            lowerValues = Arrays.copyOf(lowerValues, capacity);
+            matches = Arrays.copyOf(matches, capacity);
+            matchedCodes = Arrays.copyOf(matchedCodes, capacity);
+        }
+        for (int code = indexedCount; code < poolSize; code++) {
+            String lower = pool.get(code).toLowerCase(Locale.ROOT);
+            lowerValues[code] = lower;
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                Long key = trigram(lower, i);
+                Postings postings = trigrams.get(key);
+                if (postings == null) {
+                    postings = new Postings();
+                    trigrams.put(key, postings);
+                }
+                postings.add(code);
+            }
+        }
+        indexedCount = poolSize;
+    }
+
+    private static Long trigram(String value, int offset) {
+        return ((long) value.charAt(offset) << 32)
+                | ((long) value.charAt(offset + 1) << 16)
+                | value.charAt(offset + 2);
+    }
+
+    /**
+     * Список кодов значений, содержащих триграмму.
+     */
+    private static final class Postings {
+        int[] codes = new int[4];
+        int size;
+
+        void add(int code) {
+            // Одна триграмма может встречаться в значении несколько раз
+            if (size > 0 && codes[size - 1] == code) {
+                return;
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size++] = code;
+        }
+    }
+}
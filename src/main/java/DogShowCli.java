@@ -0,0 +1,342 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Пакетный режим без графического интерфейса: загрузка, фильтрация, сохранение
+ * (в том числе с преобразованием формата) и формирование отчёта для одного или
+ * нескольких файлов выставок. Файлы обрабатываются параллельно и независимо,
+ * а с {@code --merge} — объединяются в один список без повторов ({@link DogMerge}).
+ * <p>
+ * Для каждого файла в стандартный вывод печатается одна строка вида
+ * {@code status=ok file=... rows=... selected=... load_ms=... total_ms=...}
+ * (пары «ключ=значение» через табуляцию), ошибки дублируются в поток ошибок.
+ * Код завершения: 0 — всё успешно, 1 — ошибка хотя бы в одном файле,
+ * 2 — неверные аргументы.
+ */
+final class DogShowCli {
+    private static final Logger log = Logger.getLogger(DogShowCli.class);
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    /** Имя объединённого списка в строке итогов и при подстановке {name}. */
+    private static final String MERGED_NAME = "merged";
+    private static final String[] COLUMN_KEYS = {"name", "breed", "owner", "judge", "award"};
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Использование: java -jar dogshow.jar ФАЙЛ... [параметры]",
+            "  --filter КОЛОНКА=ТЕКСТ  оставить записи, где колонка содержит текст (без учёта регистра);",
+            "                          можно указать несколько раз, условия объединяются через «И»;",
+            "                          колонки: name, breed, owner, judge, award",
+            "  --save ПУТЬ             сохранить записи; формат по расширению (" + DogBinaryFormat.EXTENSION
+                    + " — двоичный, " + DogCsvFormat.EXTENSION + ", .ndjson, .jsonl, иначе XML)",
+            "  --report ПУТЬ           сформировать HTML-отчёт",
+            "  --jobs N                сколько файлов обрабатывать одновременно (по умолчанию — по числу ядер)",
+            "  --merge                 объединить все файлы в один список без повторов и обработать его",
+            "  --merge-key КОЛОНКИ     колонки через запятую, по которым записи считаются одинаковыми",
+            "                          (по умолчанию name,breed,owner); включает --merge",
+            "  --on-conflict keep|replace  при расхождении остальных колонок оставить первую запись",
+            "                          (по умолчанию) или заменить последней; включает --merge",
+            "  --merge-report ПУТЬ     записать отчёт о слиянии со списком конфликтов; включает --merge",
+            "В путях {name} заменяется именем входного файла без расширения (при слиянии — merged).");
+
+    private final List<Path> inputs = new ArrayList<>();
+    private final List<Integer> filterColumns = new ArrayList<>();
+    private final List<String> filterTexts = new ArrayList<>();
+    private String savePattern;
+    private String reportPattern;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private boolean merge;
+    private int[] mergeKey = DogMerge.DEFAULT_KEY;
+    private DogMerge.Policy conflictPolicy = DogMerge.Policy.KEEP_EXISTING;
+    private String mergeReportPath;
+
+    private DogShowCli() {
+    }
+
+    /**
+     * Выполняет пакетную обработку по аргументам командной строки.
+     *
+     * @return код завершения процесса
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 1 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+        DogShowCli cli = new DogShowCli();
+        try {
+            cli.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        return cli.process(out, err);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--filter": {
+                    String value = value(args, ++i, arg);
+                    int separator = value.indexOf('=');
+                    if (separator <= 0) {
+                        throw new IllegalArgumentException("Ожидается КОЛОНКА=ТЕКСТ: " + value);
+                    }
+                    filterColumns.add(column(value.substring(0, separator)));
+                    filterTexts.add(value.substring(separator + 1));
+                    break;
+                }
+                case "--save":
+                    savePattern = value(args, ++i, arg);
+                    break;
+                case "--report":
+                    reportPattern = value(args, ++i, arg);
+                    break;
+                case "--jobs":
+                    try {
+                        jobs = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Число потоков должно быть целым: " + args[i]);
+                    }
+                    if (jobs <= 0) {
+                        throw new IllegalArgumentException("Число потоков должно быть положительным: " + jobs);
+                    }
+                    break;
+                case "--merge":
+                    merge = true;
+                    break;
+                case "--merge-key": {
+                    String[] keys = value(args, ++i, arg).split(",");
+                    mergeKey = new int[keys.length];
+                    for (int k = 0; k < keys.length; k++) {
+                        mergeKey[k] = column(keys[k]);
+                    }
+                    merge = true;
+                    break;
+                }
+                case "--on-conflict": {
+                    String value = value(args, ++i, arg);
+                    if ("keep".equals(value)) {
+                        conflictPolicy = DogMerge.Policy.KEEP_EXISTING;
+                    } else if ("replace".equals(value)) {
+                        conflictPolicy = DogMerge.Policy.REPLACE;
+                    } else {
+                        throw new IllegalArgumentException("Ожидается keep или replace: " + value);
+                    }
+                    merge = true;
+                    break;
+                }
+                case "--merge-report":
+                    mergeReportPath = value(args, ++i, arg);
+                    merge = true;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                    }
+                    inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Не указаны входные файлы");
+        }
+        if (inputs.size() > 1 && !merge) {
+            // Без {name} все файлы писали бы в один и тот же результат
+            for (String pattern : new String[]{savePattern, reportPattern}) {
+                if (pattern != null && !pattern.contains("{name}")) {
+                    throw new IllegalArgumentException("Для нескольких файлов путь должен содержать {name}: " + pattern);
+                }
+            }
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не указано значение для " + option);
+        }
+        return args[index];
+    }
+
+    private static int column(String key) {
+        String normalized = key.trim().toLowerCase(Locale.ROOT);
+        String[] titles = DogRecordStore.columnTitles();
+        for (int c = 0; c < COLUMN_KEYS.length; c++) {
+            if (COLUMN_KEYS[c].equals(normalized) || titles[c].toLowerCase(Locale.ROOT).equals(normalized)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная колонка: " + key);
+    }
+
+    private int process(PrintStream out, PrintStream err) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, inputs.size()));
+        long start = System.nanoTime();
+        int failed = 0;
+        try {
+            if (merge) {
+                // Все файлы дают одну строку итогов, а неудачным считается слияние целиком
+                try {
+                    out.println(merge(executor));
+                } catch (Exception e) {
+                    failed = inputs.size();
+                    log.error("Ошибка слияния файлов " + inputs, e);
+                    String line = "status=error\tfile=" + MERGED_NAME + "\terror=" + oneLine(e);
+                    out.println(line);
+                    err.println(line);
+                }
+            } else {
+                List<Future<String>> results = new ArrayList<>(inputs.size());
+                for (Path input : inputs) {
+                    results.add(executor.submit(() -> process(input)));
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        out.println(results.get(i).get());
+                    } catch (ExecutionException e) {
+                        failed++;
+                        Throwable cause = e.getCause();
+                        log.error("Ошибка обработки файла " + inputs.get(i), cause);
+                        String line = "status=error\tfile=" + inputs.get(i) + "\terror=" + oneLine(cause);
+                        out.println(line);
+                        err.println(line);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILED;
+        } finally {
+            executor.shutdownNow();
+            DogShowMetrics.logSummary();
+        }
+        out.println("status=" + (failed == 0 ? "ok" : "error") + "\tfiles=" + inputs.size()
+                + "\tfailed=" + failed + "\ttotal_ms=" + (System.nanoTime() - start) / 1_000_000);
+        return failed == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * Обрабатывает один файл с учётом сохранённых в его журнале изменений.
+     *
+     * @return строка итогов в формате «ключ=значение»
+     */
+    private String process(Path input) throws Exception {
+        long start = System.nanoTime();
+        DogRecordStore store = new DogRecordStore();
+        DogSnapshotFormat format = DogSnapshotFormat.of(input);
+        List<DogBatch> batches = new ArrayList<>();
+        SnapshotInfo snapshot = format.read(input, batches::add);
+        for (DogBatch batch : DogJournal.applyCommitted(input, snapshot, batches)) {
+            store.addAll(batch);
+        }
+        long loaded = System.nanoTime();
+        DogShowMetrics.PARSE.record(loaded - start);
+
+        StringBuilder result = new StringBuilder("status=ok\tfile=").append(input)
+                .append("\tformat=").append(format.name().toLowerCase(Locale.ROOT))
+                .append("\trows=").append(store.size());
+        return process(store, input.getFileName().toString(), result, start, loaded);
+    }
+
+    /**
+     * Объединяет все входные файлы без повторов и обрабатывает полученный список.
+     * Файлы разбираются параллельно в {@code executor}.
+     *
+     * @return строка итогов в формате «ключ=значение»
+     */
+    private String merge(ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        List<DogMerge.Source> sources = DogMerge.read(inputs, executor);
+        long parsed = System.nanoTime();
+        DogShowMetrics.PARSE.record(parsed - start);
+        DogRecordStore store = new DogRecordStore();
+        DogMerge.Result merged = DogMerge.merge(store, sources, mergeKey, conflictPolicy);
+        merged.apply(store);
+        long mergedAt = System.nanoTime();
+
+        StringBuilder result = new StringBuilder("status=ok\tfile=").append(MERGED_NAME)
+                .append("\tfiles=").append(inputs.size())
+                .append("\tread=").append(merged.readCount())
+                .append("\tduplicates=").append(merged.duplicateCount())
+                .append("\tconflicts=").append(merged.conflicts.size())
+                .append("\trows=").append(store.size())
+                .append("\tparse_ms=").append((parsed - start) / 1_000_000)
+                .append("\tmerge_ms=").append((mergedAt - parsed) / 1_000_000);
+        if (mergeReportPath != null) {
+            Path target = Paths.get(mergeReportPath);
+            Files.write(target, merged.report(Integer.MAX_VALUE).getBytes(StandardCharsets.UTF_8));
+            result.append("\tmerge_report=").append(target)
+                    .append("\tmerge_report_ms=").append((System.nanoTime() - mergedAt) / 1_000_000);
+        }
+        return process(store, MERGED_NAME, result, start, System.nanoTime());
+    }
+
+    /**
+     * Фильтрует загруженные записи, сохраняет их и формирует отчёт.
+     *
+     * @param name   имя для подстановки вместо {name} в путях
+     * @param result начало строки итогов; дополняется и возвращается
+     */
+    private String process(DogRecordStore store, String name, StringBuilder result, long start, long loaded)
+            throws Exception {
+        DogRecordStore selected = store;
+        if (!filterTexts.isEmpty()) {
+            DogSearchIndex index = new DogSearchIndex();
+            int[] rows = null;
+            for (int i = 0; i < filterTexts.size() && (rows == null || rows.length > 0); i++) {
+                int column = filterColumns.get(i);
+                String text = filterTexts.get(i).trim();
+                rows = rows == null ? index.search(store, column, text) : index.refine(store, column, text, rows);
+            }
+            selected = store.select(rows);
+        }
+        long filtered = System.nanoTime();
+        if (!filterTexts.isEmpty()) {
+            DogShowMetrics.SEARCH.record(filtered - loaded);
+        }
+
+        result.append("\tselected=").append(selected.size())
+                .append("\tload_ms=").append((loaded - start) / 1_000_000)
+                .append("\tfilter_ms=").append((filtered - loaded) / 1_000_000);
+        if (savePattern != null) {
+            long saveStart = System.nanoTime();
+            Path target = Paths.get(resolve(savePattern, name));
+            DogSnapshotFormat.forSave(target).save(selected, target);
+            result.append("\tsaved=").append(target)
+                    .append("\tsave_ms=").append(DogShowMetrics.SAVE.recordSince(saveStart) / 1_000_000);
+        }
+        if (reportPattern != null) {
+            long reportStart = System.nanoTime();
+            String target = resolve(reportPattern, name);
+            new GenerateReportThread(selected, DogRecordStore.columnTitles(), target).generate();
+            result.append("\treport=").append(target)
+                    .append("\treport_ms=").append((System.nanoTime() - reportStart) / 1_000_000);
+        }
+        result.append("\ttotal_ms=").append((System.nanoTime() - start) / 1_000_000);
+        return result.toString();
+    }
+
+    private static String resolve(String pattern, String name) {
+        int dot = name.lastIndexOf('.');
+        return pattern.replace("{name}", dot > 0 ? name.substring(0, dot) : name);
+    }
+
+    private static String oneLine(Throwable error) {
+        String message = error.getClass().getSimpleName()
+                + (error.getMessage() == null ? "" : ": " + error.getMessage());
+        return message.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
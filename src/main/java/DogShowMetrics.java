@@ -0,0 +1,213 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.SwingUtilities;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Встроенные метрики приложения: задержки основных этапов (разбор, сохранение,
+ * компиляция, заполнение и экспорт отчёта, поиск), скорость загрузки, расход памяти
+ * на запись и время, когда поток событий Swing (EDT) был занят.
+ * <p>
+ * Показатели доступны через JMX (домен {@code dogshow}, например в JConsole или VisualVM)
+ * и периодически пишутся в журнал сводкой; период в секундах задаёт свойство
+ * {@code dogshow.metricsInterval} (0 — не писать). Запись показателя не блокирует
+ * и допустима из любого потока.
+ */
+final class DogShowMetrics implements DogShowMetricsMXBean {
+    private static final Logger log = Logger.getLogger(DogShowMetrics.class);
+    private static final long SUMMARY_INTERVAL_SECONDS = Long.getLong("dogshow.metricsInterval", 60);
+    /** Как часто проверять отзывчивость EDT. */
+    private static final long EDT_PROBE_INTERVAL_MS = 100;
+    /** Задержка EDT, начиная с которой он считается заблокированным. */
+    private static final long EDT_BLOCKED_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    static final LatencyHistogram PARSE = new LatencyHistogram("parse", "Разбор файла выставки");
+    static final LatencyHistogram LOAD = new LatencyHistogram("load", "Загрузка файла до отображения в таблице");
+    static final LatencyHistogram SAVE = new LatencyHistogram("save", "Сохранение полного снимка");
+    static final LatencyHistogram COMMIT = new LatencyHistogram("commit", "Фиксация журнала изменений");
+    static final LatencyHistogram COMPILE = new LatencyHistogram("compile", "Получение шаблона отчёта (компиляция или кэш)");
+    static final LatencyHistogram FILL = new LatencyHistogram("fill", "Заполнение отчёта");
+    static final LatencyHistogram EXPORT = new LatencyHistogram("export", "Экспорт отчёта");
+    static final LatencyHistogram SEARCH = new LatencyHistogram("search", "Поиск");
+    static final LatencyHistogram EDT_LAG = new LatencyHistogram("edt", "Задержка обработки событий Swing");
+    private static final LatencyHistogram[] STAGES = {PARSE, LOAD, SAVE, COMMIT, COMPILE, FILL, EXPORT, SEARCH};
+
+    private static final DogShowMetrics INSTANCE = new DogShowMetrics();
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private final LongAdder rowsLoaded = new LongAdder();
+    private volatile double lastLoadRowsPerSecond;
+    private volatile long storeRows;
+    private volatile long storeBytes;
+    private final LongAdder edtBlockedNanos = new LongAdder();
+    private final AtomicLong edtMaxLagNanos = new AtomicLong();
+    private final AtomicBoolean probePending = new AtomicBoolean();
+    /** Сумма счётчиков этапов на момент прошлой сводки: без новых событий сводка не пишется. */
+    private long summarizedEvents;
+
+    private DogShowMetrics() {
+    }
+
+    /**
+     * Регистрирует показатели в JMX и запускает проверку EDT и периодическую сводку.
+     * Повторные вызовы ничего не делают.
+     */
+    static void start() {
+        if (!STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        registerMBeans();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(INSTANCE::probeEdt, EDT_PROBE_INTERVAL_MS, EDT_PROBE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        if (SUMMARY_INTERVAL_SECONDS > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                if (INSTANCE.hasNewEvents()) {
+                    logSummary();
+                }
+            }, SUMMARY_INTERVAL_SECONDS, SUMMARY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Учитывает завершённую загрузку.
+     *
+     * @param rows          число загруженных записей
+     * @param nanos         длительность загрузки
+     * @param storeRowCount записей в хранилище после загрузки
+     * @param storeBytes    объём хранилища ({@link DogRecordStore#memoryFootprint()})
+     */
+    static void loaded(long rows, long nanos, long storeRowCount, long storeBytes) {
+        INSTANCE.rowsLoaded.add(rows);
+        INSTANCE.lastLoadRowsPerSecond = rows * 1e9 / Math.max(1, nanos);
+        INSTANCE.storeRows = storeRowCount;
+        INSTANCE.storeBytes = storeBytes;
+    }
+
+    /**
+     * Пишет в журнал сводку по всем показателям.
+     */
+    static void logSummary() {
+        DogShowMetrics metrics = INSTANCE;
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Метрики: загружено записей %d (последняя загрузка %.0f записей/с),"
+                        + " на запись: хранилище %d Б, куча %d Б; EDT заблокирован %d мс (макс. задержка %d мс)",
+                metrics.getRowsLoaded(), metrics.getLastLoadRowsPerSecond(), metrics.getStoreBytesPerRow(),
+                metrics.getHeapBytesPerRow(), metrics.getEdtBlockedMillis(), metrics.getEdtMaxLagMillis()));
+        for (LatencyHistogram stage : STAGES) {
+            long count = stage.getCount();
+            if (count > 0) {
+                summary.append(String.format("%n    %-8s %6d раз: ср. %9.1f мс, p50 %9.1f, p95 %9.1f, p99 %9.1f, макс. %9.1f",
+                        stage.name(), count, stage.getMeanMillis(), stage.getP50Millis(),
+                        stage.getP95Millis(), stage.getP99Millis(), stage.getMaxMillis()));
+            }
+        }
+        log.info(summary.toString());
+    }
+
+    @Override
+    public long getRowsLoaded() {
+        return rowsLoaded.sum();
+    }
+
+    @Override
+    public double getLastLoadRowsPerSecond() {
+        return lastLoadRowsPerSecond;
+    }
+
+    @Override
+    public long getStoreRows() {
+        return storeRows;
+    }
+
+    @Override
+    public long getStoreBytesPerRow() {
+        long rows = storeRows;
+        return rows == 0 ? 0 : storeBytes / rows;
+    }
+
+    @Override
+    public long getHeapBytesPerRow() {
+        long rows = storeRows;
+        Runtime runtime = Runtime.getRuntime();
+        return rows == 0 ? 0 : (runtime.totalMemory() - runtime.freeMemory()) / rows;
+    }
+
+    @Override
+    public long getEdtBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(edtBlockedNanos.sum());
+    }
+
+    @Override
+    public long getEdtMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(edtMaxLagNanos.get());
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram stage : STAGES) {
+            stage.reset();
+        }
+        EDT_LAG.reset();
+        rowsLoaded.reset();
+        edtBlockedNanos.reset();
+        edtMaxLagNanos.set(0);
+        lastLoadRowsPerSecond = 0;
+    }
+
+    /**
+     * Ставит в очередь EDT пустую задачу и измеряет, через сколько она выполнится.
+     * Пока задача не выполнена, новая не ставится, поэтому долгая блокировка
+     * учитывается одним замером целиком.
+     */
+    private void probeEdt() {
+        if (!probePending.compareAndSet(false, true)) {
+            return;
+        }
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            long lag = EDT_LAG.recordSince(posted);
+            edtMaxLagNanos.accumulateAndGet(lag, Math::max);
+            if (lag >= EDT_BLOCKED_THRESHOLD_NANOS) {
+                edtBlockedNanos.add(lag);
+            }
+            probePending.set(false);
+        });
+    }
+
+    private boolean hasNewEvents() {
+        long events = edtBlockedNanos.sum();
+        for (LatencyHistogram stage : STAGES) {
+            events += stage.getCount();
+        }
+        boolean changed = events != summarizedEvents;
+        summarizedEvents = events;
+        return changed;
+    }
+
+    private static void registerMBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(INSTANCE, new ObjectName("dogshow:type=Metrics"));
+            for (LatencyHistogram stage : STAGES) {
+                server.registerMBean(stage, new ObjectName("dogshow:type=Latency,name=" + stage.name()));
+            }
+            server.registerMBean(EDT_LAG, new ObjectName("dogshow:type=Latency,name=" + EDT_LAG.name()));
+        } catch (JMException | RuntimeException e) {
+            log.warn("Не удалось зарегистрировать метрики в JMX: " + e.getMessage(), e);
+        }
+    }
+}
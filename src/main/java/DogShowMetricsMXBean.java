@@ -0,0 +1,29 @@
+/**
+ * Общие показатели приложения в JMX ({@code dogshow:type=Metrics}).
+ * Задержки отдельных этапов публикуются как {@link LatencyHistogramMXBean}.
+ */
+public interface DogShowMetricsMXBean {
+    /** Всего загружено записей с начала работы. */
+    long getRowsLoaded();
+
+    /** Скорость последней загрузки, записей в секунду. */
+    double getLastLoadRowsPerSecond();
+
+    /** Записей в хранилище по последней загрузке. */
+    long getStoreRows();
+
+    /** Объём хранилища записей на одну запись, байт. */
+    long getStoreBytesPerRow();
+
+    /** Занятая куча на одну запись хранилища, байт (включая всё остальное в куче). */
+    long getHeapBytesPerRow();
+
+    /** Суммарное время, когда поток событий Swing не отвечал дольше порога, мс. */
+    long getEdtBlockedMillis();
+
+    /** Наибольшая задержка потока событий Swing, мс. */
+    long getEdtMaxLagMillis();
+
+    /** Сбрасывает все показатели и гистограммы. */
+    void reset();
+}
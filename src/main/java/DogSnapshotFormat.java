@@ -0,0 +1,161 @@
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Формат файла снимка списка собак: XML, CSV, NDJSON или компактный двоичный.
+ * При чтении формат определяется по содержимому файла ({@link #of}), при сохранении —
+ * только по расширению ({@link #forSave}).
+ */
+enum DogSnapshotFormat {
+    XML {
+        @Override
+        SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+            long size = Files.size(path);
+            if (ParallelDogXmlReader.isWorthwhile(size)) {
+                SnapshotInfo info = ParallelDogXmlReader.read(path, handler);
+                if (info != null) {
+                    return info;
+                }
+            }
+            CRC32 crc = new CRC32();
+            try (InputStream in = new BufferedInputStream(
+                    new CheckedInputStream(Files.newInputStream(path), crc), 64 * 1024)) {
+                // Разборщик StAX закрывает поток по окончании документа, а хвост ещё нужно дочитать
+                new DogXmlReader().read(new FilterInputStream(in) {
+                    @Override
+                    public void close() {
+                    }
+                }, handler);
+                // Дочитываем хвост файла, чтобы контрольная сумма охватила его целиком
+                byte[] rest = new byte[8192];
+                while (in.read(rest) != -1) {
+                    // пропуск
+                }
+            }
+            return new SnapshotInfo(size, crc.getValue());
+        }
+
+        @Override
+        SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+            return DogXmlWriter.save(store, path);
+        }
+    },
+
+    CSV {
+        @Override
+        SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+            return DogCsvFormat.read(path, handler);
+        }
+
+        @Override
+        SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+            return DogCsvFormat.save(store, path);
+        }
+    },
+
+    NDJSON {
+        @Override
+        SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+            return DogNdjsonFormat.read(path, handler);
+        }
+
+        @Override
+        SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+            return DogNdjsonFormat.save(store, path);
+        }
+    },
+
+    BINARY {
+        @Override
+        SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+            return DogBinaryFormat.read(path, handler);
+        }
+
+        @Override
+        SnapshotInfo save(DogRecordStore store, Path path) throws IOException {
+            return DogBinaryFormat.save(store, path);
+        }
+    };
+
+    /**
+     * Читает снимок и передаёт записи обработчику порциями.
+     *
+     * @return размер и контрольная сумма снимка для проверки журнала изменений
+     */
+    abstract SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception;
+
+    /**
+     * Атомарно сохраняет записи в файл этого формата.
+     *
+     * @return размер и контрольная сумма записанного снимка
+     */
+    abstract SnapshotInfo save(DogRecordStore store, Path path) throws IOException;
+
+    /**
+     * Определяет формат файла для чтения. Существующий файл — по содержимому: сигнатура
+     * двоичного формата, иначе (кроме файлов {@value DogCsvFormat#EXTENSION}, где значение
+     * первого поля может начинаться с любого символа) первый значимый символ: {@code <} — XML,
+     * фигурная скобка — NDJSON; иначе по расширению, как {@link #forSave}.
+     */
+    static DogSnapshotFormat of(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer head = ByteBuffer.allocate(256);
+                while (head.hasRemaining() && channel.read(head) != -1) {
+                    // чтение начала файла
+                }
+                head.flip();
+                if (DogBinaryFormat.hasMagic(head.duplicate())) {
+                    return BINARY;
+                }
+                if (byExtension(path) == CSV) {
+                    return CSV;
+                }
+                // Пропуск метки порядка байтов UTF-8 и пробельных символов
+                while (head.hasRemaining()) {
+                    byte b = head.get();
+                    if (b == '<') {
+                        return XML;
+                    }
+                    if (b == '{') {
+                        return NDJSON;
+                    }
+                    if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != (byte) 0xEF && b != (byte) 0xBB
+                            && b != (byte) 0xBF) {
+                        break;
+                    }
+                }
+            }
+        }
+        return byExtension(path);
+    }
+
+    /**
+     * Определяет формат сохранения по расширению, независимо от содержимого уже
+     * существующего файла: {@value DogBinaryFormat#EXTENSION} — двоичный,
+     * {@value DogCsvFormat#EXTENSION}, {@code .ndjson} или {@code .jsonl}, остальные — XML.
+     */
+    static DogSnapshotFormat forSave(Path path) {
+        return byExtension(path);
+    }
+
+    private static DogSnapshotFormat byExtension(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(DogBinaryFormat.EXTENSION)) {
+            return BINARY;
+        }
+        if (name.endsWith(DogCsvFormat.EXTENSION)) {
+            return CSV;
+        }
+        return DogNdjsonFormat.hasExtension(path) ? NDJSON : XML;
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Группировки записей модели ({@link DogAggregation}), которые поддерживаются при каждом
+ * изменении данных: модель сообщает о записях до изменения (чтобы исключить их из групп)
+ * и после него. Поэтому итоги для панели статистики и отчёта не требуют нового прохода
+ * по всем записям — полный проход выполняется один раз, при первом запросе группировки.
+ * <p>
+ * Одинаковые группировки разделяются между пользователями; группировка перестаёт
+ * поддерживаться, когда её освободили все, кто запросил. Все методы вызываются в EDT.
+ */
+class DogStatistics {
+    private final List<DogAggregation> aggregations = new ArrayList<>();
+
+    /**
+     * Возвращает группировку записей хранилища по колонкам, создавая её при необходимости.
+     * Группировку следует освободить через {@link #release}, когда она больше не нужна.
+     */
+    public DogAggregation acquire(DogRecordStore store, int... columns) {
+        for (DogAggregation aggregation : aggregations) {
+            if (Arrays.equals(aggregation.columns(), columns)) {
+                aggregation.users++;
+                return aggregation;
+            }
+        }
+        DogAggregation aggregation = DogAggregation.of(store, columns);
+        aggregation.users = 1;
+        aggregations.add(aggregation);
+        return aggregation;
+    }
+
+    /**
+     * Освобождает группировку, полученную через {@link #acquire}.
+     */
+    public void release(DogAggregation aggregation) {
+        if (--aggregation.users <= 0) {
+            aggregations.remove(aggregation);
+        }
+    }
+
+    /**
+     * Учитывает добавленные записи с {@code first} по {@code last} включительно.
+     */
+    void added(DogRecordStore store, int first, int last) {
+        for (DogAggregation aggregation : aggregations) {
+            aggregation.add(store, first, last);
+        }
+    }
+
+    /**
+     * Исключает записи перед их удалением.
+     */
+    void removing(DogRecordStore store, int[] rows) {
+        for (DogAggregation aggregation : aggregations) {
+            for (int row : rows) {
+                aggregation.remove(store, row);
+            }
+        }
+    }
+
+    /**
+     * Исключает записи перед изменением колонки.
+     *
+     * @param column изменяемая колонка или -1, если изменяется вся запись
+     */
+    void changing(DogRecordStore store, int[] rows, int column) {
+        for (DogAggregation aggregation : aggregations) {
+            if (column < 0 || aggregation.groupsBy(column)) {
+                for (int row : rows) {
+                    aggregation.remove(store, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Учитывает записи после изменения колонки.
+     *
+     * @param column изменённая колонка или -1, если изменена вся запись
+     */
+    void changed(DogRecordStore store, int[] rows, int column) {
+        for (DogAggregation aggregation : aggregations) {
+            if (column < 0 || aggregation.groupsBy(column)) {
+                for (int row : rows) {
+                    aggregation.add(store, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Исключает все записи при очистке хранилища.
+     */
+    void cleared() {
+        for (DogAggregation aggregation : aggregations) {
+            aggregation.clear();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Панель статистики: число собак в группах по выбранным колонкам, например по породам,
+ * награды по судьям (судья и награда) или лидеры среди владельцев.
+ * <p>
+ * Группировка поддерживается моделью при каждом изменении данных, поэтому панель
+ * обновляется без прохода по всем записям; обновления, пришедшие подряд
+ * (например при загрузке файла), объединяются в одно.
+ */
+class DogStatisticsDialog extends JDialog {
+    /** Сколько групп показывать: остальные группы меньше показанных. */
+    private static final int ROW_LIMIT = 1000;
+    /** Задержка обновления после изменения данных, мс. */
+    private static final int REFRESH_DELAY_MS = 300;
+
+    private final DogTableModel tableModel;
+    private final String[] columnNames;
+    private final JCheckBox[] columnBoxes;
+    private final GroupTableModel groupTableModel = new GroupTableModel();
+    private final JLabel summary = new JLabel();
+    private final Timer refreshTimer;
+    private final TableModelListener dataListener;
+    private DogAggregation aggregation;
+
+    DogStatisticsDialog(JFrame parent, DogTableModel tableModel) {
+        super(parent, "Статистика", false);
+        this.tableModel = tableModel;
+        this.columnNames = tableModel.columnNames();
+
+        JPanel columnPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        columnPanel.add(new JLabel("Группировать по:"));
+        columnBoxes = new JCheckBox[columnNames.length];
+        for (int c = 0; c < columnNames.length; c++) {
+            columnBoxes[c] = new JCheckBox(columnNames[c], c == DogRecordStore.BREED);
+            columnBoxes[c].addActionListener(e -> regroup());
+            columnPanel.add(columnBoxes[c]);
+        }
+        summary.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        add(columnPanel, BorderLayout.NORTH);
+        add(new JScrollPane(new JTable(groupTableModel)), BorderLayout.CENTER);
+        add(summary, BorderLayout.SOUTH);
+
+        refreshTimer = new Timer(REFRESH_DELAY_MS, e -> refresh());
+        refreshTimer.setRepeats(false);
+        dataListener = e -> refreshTimer.restart();
+        tableModel.addTableModelListener(dataListener);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refreshTimer.stop();
+                tableModel.removeTableModelListener(dataListener);
+                releaseAggregation();
+            }
+        });
+        regroup();
+        setSize(600, 450);
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Запрашивает у модели группировку по отмеченным колонкам.
+     */
+    private void regroup() {
+        releaseAggregation();
+        List<Integer> selected = new ArrayList<>();
+        for (int c = 0; c < columnBoxes.length; c++) {
+            if (columnBoxes[c].isSelected()) {
+                selected.add(c);
+            }
+        }
+        if (!selected.isEmpty()) {
+            aggregation = tableModel.groupBy(selected.stream().mapToInt(Integer::intValue).toArray());
+        }
+        refresh();
+    }
+
+    private void refresh() {
+        if (aggregation == null) {
+            groupTableModel.show(new int[0], Collections.emptyList());
+            summary.setText("Отметьте хотя бы одну колонку.");
+            return;
+        }
+        groupTableModel.show(aggregation.columns(), aggregation.top(ROW_LIMIT));
+        summary.setText("Записей: " + aggregation.total() + ", групп: " + aggregation.groupCount()
+                + (aggregation.groupCount() > ROW_LIMIT ? " (показаны первые " + ROW_LIMIT + ")" : ""));
+    }
+
+    private void releaseAggregation() {
+        if (aggregation != null) {
+            tableModel.releaseGrouping(aggregation);
+            aggregation = null;
+        }
+    }
+
+    /**
+     * Таблица групп: значения колонок группировки и число записей.
+     */
+    private class GroupTableModel extends AbstractTableModel {
+        private int[] columns = new int[0];
+        private List<DogAggregation.Group> groups = Collections.emptyList();
+
+        void show(int[] columns, List<DogAggregation.Group> groups) {
+            boolean structureChanged = !Arrays.equals(columns, this.columns);
+            this.columns = columns;
+            this.groups = groups;
+            if (structureChanged) {
+                fireTableStructureChanged();
+            } else {
+                fireTableDataChanged();
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return groups.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length + 1;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column < columns.length ? columnNames[columns[column]] : "Количество";
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column < columns.length ? String.class : Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            DogAggregation.Group group = groups.get(row);
+            return column < columns.length ? group.value(column) : group.count;
+        }
+    }
+}
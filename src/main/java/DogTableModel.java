@@ -0,0 +1,298 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Модель таблицы собак поверх колоночного хранилища {@link DogRecordStore}.
+ * В отличие от {@code DefaultTableModel} принимает записи пачками и
+ * оповещает таблицу одним событием на пачку. Все изменяющие методы
+ * должны вызываться в потоке обработки событий (EDT).
+ */
+class DogTableModel extends AbstractTableModel {
+    private final String[] columns;
+    private final DogRecordStore store = new DogRecordStore();
+    private final DogSearchIndex searchIndex = new DogSearchIndex();
+    private final DogStatistics statistics = new DogStatistics();
+    private volatile long version;
+    private final List<DogChangeListener> changeListeners = new ArrayList<>();
+
+    public DogTableModel(String[] columns) {
+        this.columns = columns.clone();
+    }
+
+    @Override
+    public int getRowCount() {
+        return store.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Имена всех колонок — они же имена полей отчёта.
+     */
+    public String[] columnNames() {
+        return columns.clone();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return store.get(row, column);
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        int[] rows = {row};
+        statistics.changing(store, rows, column);
+        store.set(row, column, value == null ? "" : value.toString());
+        statistics.changed(store, rows, column);
+        fireTableCellUpdated(row, column);
+        for (DogChangeListener listener : changeListeners) {
+            listener.rowChanged(this, row);
+        }
+    }
+
+    /**
+     * Заменяет все значения строки одним событием.
+     *
+     * @param values значения в формате {name, breed, owner, judge, award}
+     */
+    public void setRow(int row, String[] values) {
+        int[] rows = {row};
+        statistics.changing(store, rows, -1);
+        for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+            store.set(row, c, values[c]);
+        }
+        statistics.changed(store, rows, -1);
+        fireTableRowsUpdated(row, row);
+        for (DogChangeListener listener : changeListeners) {
+            listener.rowChanged(this, row);
+        }
+    }
+
+    /**
+     * Заменяет все значения нескольких строк одним событием, например при слиянии файлов.
+     *
+     * @param rows   номера строк по возрастанию, без повторов
+     * @param values значения строк в формате {name, breed, owner, judge, award}
+     */
+    public void setRows(int[] rows, String[][] values) {
+        if (rows.length == 0) {
+            return;
+        }
+        statistics.changing(store, rows, -1);
+        for (int i = 0; i < rows.length; i++) {
+            for (int c = 0; c < DogRecordStore.COLUMN_COUNT; c++) {
+                store.set(rows[i], c, values[i][c]);
+            }
+        }
+        statistics.changed(store, rows, -1);
+        // Событие обновления может охватывать и неизменённые строки между изменёнными
+        fireTableRowsUpdated(rows[0], rows[rows.length - 1]);
+        for (DogChangeListener listener : changeListeners) {
+            for (int row : rows) {
+                listener.rowChanged(this, row);
+            }
+        }
+    }
+
+    /**
+     * Добавляет одну запись в конец таблицы.
+     */
+    public void addRow(String[] row) {
+        store.add(row);
+        int index = store.size() - 1;
+        statistics.added(store, index, index);
+        fireTableRowsInserted(index, index);
+        for (DogChangeListener listener : changeListeners) {
+            listener.rowsAdded(this, index, index);
+        }
+    }
+
+    /**
+     * Добавляет порции записей в конец таблицы одним событием.
+     */
+    public void addBatches(List<DogBatch> batches) {
+        int first = store.size();
+        for (DogBatch batch : batches) {
+            store.addAll(batch);
+        }
+        if (store.size() > first) {
+            statistics.added(store, first, store.size() - 1);
+            fireTableRowsInserted(first, store.size() - 1);
+            for (DogChangeListener listener : changeListeners) {
+                listener.rowsAdded(this, first, store.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным индексом.
+     */
+    public void removeRow(int row) {
+        statistics.removing(store, new int[]{row});
+        store.remove(row);
+        fireTableRowsDeleted(row, row);
+        for (DogChangeListener listener : changeListeners) {
+            listener.rowsRemoved(this, new int[]{row});
+        }
+    }
+
+    /**
+     * Удаляет несколько записей одним событием.
+     *
+     * @param rows номера строк по возрастанию, без повторов
+     */
+    public void removeRows(int[] rows) {
+        if (rows.length == 0) {
+            return;
+        }
+        statistics.removing(store, rows);
+        store.removeAll(rows);
+        int first = rows[0];
+        int last = rows[rows.length - 1];
+        if (last - first + 1 == rows.length) {
+            fireTableRowsDeleted(first, last);
+        } else {
+            // Событие удаления описывает только непрерывный диапазон строк
+            fireTableDataChanged();
+        }
+        for (DogChangeListener listener : changeListeners) {
+            listener.rowsRemoved(this, rows);
+        }
+    }
+
+    /**
+     * Устанавливает одно значение колонки в нескольких строках одним событием,
+     * например назначает судью или награду всем выбранным собакам.
+     *
+     * @param rows номера строк по возрастанию, без повторов
+     */
+    public void setColumnValue(int[] rows, int column, String value) {
+        if (rows.length == 0) {
+            return;
+        }
+        statistics.changing(store, rows, column);
+        store.setAll(rows, column, value == null ? "" : value);
+        statistics.changed(store, rows, column);
+        fireTableChanged(new TableModelEvent(this, rows[0], rows[rows.length - 1], column));
+        for (DogChangeListener listener : changeListeners) {
+            listener.columnChanged(this, rows, column);
+        }
+    }
+
+    /**
+     * Удаляет все записи.
+     */
+    public void clear() {
+        int count = store.size();
+        store.clear();
+        statistics.cleared();
+        if (count > 0) {
+            fireTableRowsDeleted(0, count - 1);
+        }
+    }
+
+    /**
+     * Возвращает запись в формате {name, breed, owner, judge, award}.
+     */
+    public String[] getRow(int row) {
+        return store.getRow(row);
+    }
+
+    /**
+     * Ищет строки, у которых значение в колонке содержит текст (без учёта регистра).
+     *
+     * @return номера найденных строк модели по возрастанию
+     */
+    public int[] search(int column, String text) {
+        return searchIndex.search(store, column, text);
+    }
+
+    /**
+     * Возвращает группировку записей по колонкам (например {@link DogRecordStore#BREED}),
+     * которая далее поддерживается при каждом изменении модели. Первый запрос группировки
+     * проходит по всем записям, повторный возвращает уже существующую.
+     * Группировку следует освободить через {@link #releaseGrouping}, когда она больше не нужна.
+     */
+    public DogAggregation groupBy(int... columns) {
+        return statistics.acquire(store, columns);
+    }
+
+    /**
+     * Освобождает группировку, полученную через {@link #groupBy}.
+     */
+    public void releaseGrouping(DogAggregation aggregation) {
+        statistics.release(aggregation);
+    }
+
+    public void addChangeListener(DogChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(DogChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Хранилище данных модели; изменять его следует только через методы модели,
+     * а читать из других потоков — только через {@link #snapshot()}.
+     */
+    DogRecordStore store() {
+        return store;
+    }
+
+    /**
+     * Неизменяемый снимок записей на текущий момент для чтения в фоновом потоке
+     * (сохранение, отчёт, поиск); вызывается в EDT и не копирует данные.
+     */
+    public DogRecordStore snapshot() {
+        return store.snapshot();
+    }
+
+    /**
+     * Поисковый индекс модели.
+     */
+    DogSearchIndex searchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Номер версии данных: увеличивается при каждом изменении модели.
+     * Позволяет отбросить результаты фоновой операции, если данные успели измениться.
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        version++;
+        super.fireTableChanged(e);
+    }
+
+    /**
+     * Приблизительный объём памяти, занимаемый данными таблицы, в байтах.
+     */
+    public long memoryFootprint() {
+        return store.memoryFootprint();
+    }
+}
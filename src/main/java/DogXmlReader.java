@@ -0,0 +1,103 @@
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * Потоковый (StAX) разбор XML-файла со списком собак.
+ * Элементы {@code <dog>} читаются по одному и передаются обработчику порциями,
+ * поэтому расход памяти определяется размером порции, а не размером файла.
+ */
+class DogXmlReader {
+    /** Размер порции по умолчанию. */
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Обработчик очередной порции прочитанных записей.
+     */
+    interface ChunkHandler {
+        /**
+         * @param batch очередная порция записей; после вызова обработчик владеет ею
+         */
+        void onChunk(DogBatch batch) throws Exception;
+    }
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final int chunkSize;
+
+    public DogXmlReader() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public DogXmlReader(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер порции должен быть положительным: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Читает файл и передаёт записи обработчику.
+     *
+     * @return количество прочитанных записей
+     */
+    public long read(File file, ChunkHandler handler) throws Exception {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            return read(in, handler);
+        }
+    }
+
+    /**
+     * Читает поток и передаёт записи обработчику.
+     *
+     * @return количество прочитанных записей
+     */
+    public long read(InputStream in, ChunkHandler handler) throws Exception {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        long count = 0;
+        DogBatch chunk = new DogBatch(chunkSize);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "dog".equals(reader.getLocalName())) {
+                    chunk.add(
+                            attribute(reader, "name"),
+                            attribute(reader, "breed"),
+                            attribute(reader, "owner"),
+                            attribute(reader, "judge"),
+                            attribute(reader, "award"));
+                    count++;
+                    if (chunk.size() == chunkSize) {
+                        handler.onChunk(chunk);
+                        chunk = new DogBatch(chunkSize);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                handler.onChunk(chunk);
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает значение атрибута или пустую строку, если атрибут отсутствует
+     * (так же, как {@code Element.getAttribute} в DOM).
+     */
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
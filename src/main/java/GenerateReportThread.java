@@ -0,0 +1,133 @@
+import java.util.HashMap;
+import java.util.List;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.HtmlExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleHtmlExporterOutput;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Формирование HTML-отчёта по снимку записей, сделанному при создании задачи.
+ * Большие отчёты заполняются с подкачкой страниц (см. {@link ReportFill}).
+ * В конце отчёта выводятся итоги: число собак, породы и награды по судьям.
+ */
+class GenerateReportThread implements Runnable {
+    private static final Logger log = Logger.getLogger(GenerateReportThread.class);
+    /** Сколько пород перечислять в итогах отчёта. */
+    private static final int STATISTICS_LIMIT = 20;
+    private DogRecordStore records;
+    private String[] columnNames;
+    private String reportPath;
+    private String statistics;
+
+    /**
+     * Снимает неизменяемый снимок записей модели и итоги по её группировкам; вызывается в EDT.
+     */
+    public GenerateReportThread(DogTableModel tableModel, String reportPath) {
+        this(tableModel.snapshot(), tableModel.columnNames(), reportPath);
+        DogAggregation byBreed = tableModel.groupBy(DogRecordStore.BREED);
+        DogAggregation byJudgeAward = tableModel.groupBy(DogRecordStore.JUDGE, DogRecordStore.AWARD);
+        statistics = statistics(byBreed, byJudgeAward);
+        tableModel.releaseGrouping(byBreed);
+        tableModel.releaseGrouping(byJudgeAward);
+    }
+
+    /**
+     * @param records     записи, которые не изменяются во время формирования отчёта
+     * @param columnNames имена колонок — они же имена полей отчёта
+     */
+    public GenerateReportThread(DogRecordStore records, String[] columnNames, String reportPath) {
+        this.records = records;
+        this.columnNames = columnNames;
+        this.reportPath = reportPath;
+    }
+
+    @Override
+    public void run() {
+        try {
+            generate();
+        } catch (Exception e) {
+            log.error("Ошибка при формировании отчета: " + reportPath, e);
+        }
+    }
+
+    /**
+     * Формирует отчёт в текущем потоке.
+     */
+    public void generate() throws Exception {
+        // Генерация HTML-отчёта
+        long start = System.nanoTime();
+        JasperReport jasperReport = ReportCache.get(ReportCache.DOG_SHOW_REPORT);
+        long compiled = System.nanoTime();
+        DogShowMetrics.COMPILE.record(compiled - start);
+        DogReportDataSource dataSource = new DogReportDataSource(records, columnNames);
+
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put("ReportTitle", "Отчет о собаках");
+        parameters.put("Author", "Dog Show Administration");
+        if (statistics == null) {
+            // Записи переданы без модели: группировки строятся одним проходом по ним
+            statistics = statistics(DogAggregation.of(records, DogRecordStore.BREED),
+                    DogAggregation.of(records, DogRecordStore.JUDGE, DogRecordStore.AWARD));
+        }
+        parameters.put("Statistics", statistics);
+
+        try (ReportFill fill = ReportFill.fill(jasperReport, parameters, dataSource, records.size())) {
+            long filled = System.nanoTime();
+            DogShowMetrics.FILL.record(filled - compiled);
+
+            HtmlExporter exporter = new HtmlExporter();
+            exporter.setExporterInput(new SimpleExporterInput(fill.print()));
+            exporter.setExporterOutput(new SimpleHtmlExporterOutput(reportPath));
+
+            // Отключение лишних логов JasperReports
+            JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance())
+                    .setProperty("net.sf.jasperreports.debug", "false");
+
+            exporter.exportReport();
+            long exported = System.nanoTime();
+            DogShowMetrics.EXPORT.record(exported - filled);
+            log.info("Отчёт " + reportPath + ": шаблон " + (compiled - start) / 1_000_000
+                    + " мс, заполнение " + (filled - compiled) / 1_000_000
+                    + " мс, экспорт " + (exported - filled) / 1_000_000 + " мс");
+        }
+    }
+
+    /**
+     * Текст итогов отчёта: число собак, самые многочисленные породы и награды по судьям.
+     */
+    static String statistics(DogAggregation byBreed, DogAggregation byJudgeAward) {
+        StringBuilder text = new StringBuilder();
+        text.append("Всего собак: ").append(byBreed.total());
+        text.append("\nПород: ").append(byBreed.groupCount());
+        for (DogAggregation.Group group : byBreed.top(STATISTICS_LIMIT)) {
+            text.append("\n    ").append(displayValue(group.value(0))).append(" — ").append(group.count);
+        }
+        if (byBreed.groupCount() > STATISTICS_LIMIT) {
+            text.append("\n    … и ещё ").append(byBreed.groupCount() - STATISTICS_LIMIT);
+        }
+
+        List<DogAggregation.Group> awards = byJudgeAward.groups();
+        awards.removeIf(group -> group.value(1).isEmpty());
+        awards.sort((a, b) -> a.value(0).equals(b.value(0))
+                ? Integer.compare(b.count, a.count) : a.value(0).compareTo(b.value(0)));
+        text.append("\nНаграды по судьям:");
+        String judge = null;
+        for (DogAggregation.Group group : awards) {
+            if (!group.value(0).equals(judge)) {
+                judge = group.value(0);
+                text.append("\n    ").append(displayValue(judge)).append(':');
+            }
+            text.append("\n        ").append(group.value(1)).append(" — ").append(group.count);
+        }
+        return text.toString();
+    }
+
+    private static String displayValue(String value) {
+        return value.isEmpty() ? "(не указано)" : value;
+    }
+}
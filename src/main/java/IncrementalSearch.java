@@ -0,0 +1,131 @@
+import javax.swing.Timer;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Поиск по мере ввода текста.
+ * Запросы откладываются до паузы во вводе, выполняются в фоне через
+ * {@link TaskScheduler} под ключом {@value #TASK_KEY} (и видны в строке состояния)
+ * и отменяются, если пользователь успел ввести следующий символ. Если новый запрос
+ * продолжает предыдущий (например, «рек» → «рекс»), проверяются только строки,
+ * найденные в прошлый раз. Все методы, кроме фоновой задачи, вызываются в EDT.
+ */
+class IncrementalSearch {
+    /** Пауза во вводе, после которой запускается поиск, мс. */
+    private static final int DEBOUNCE_DELAY = 200;
+    /** Ключ задачи поиска в планировщике. */
+    static final String TASK_KEY = "search";
+
+    private final TaskScheduler scheduler;
+    private final DogTableModel tableModel;
+    private final Consumer<int[]> resultHandler;
+    private final Timer timer;
+
+    private String pendingText = "";
+    private int pendingColumn;
+    private Future<?> running;
+    private long generation;
+
+    /** Последний применённый результат, используемый для уточнения. */
+    private String lastText;
+    private int lastColumn;
+    private long lastVersion;
+    private int[] lastRows;
+
+    /**
+     * @param resultHandler получает номера найденных строк модели в EDT
+     */
+    public IncrementalSearch(TaskScheduler scheduler, DogTableModel tableModel, Consumer<int[]> resultHandler) {
+        this.scheduler = scheduler;
+        this.tableModel = tableModel;
+        this.resultHandler = resultHandler;
+        timer = new Timer(DEBOUNCE_DELAY, e -> start());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Планирует поиск после паузы во вводе; предыдущий запланированный поиск отменяется.
+     */
+    public void schedule(String text, int column) {
+        pendingText = text.trim();
+        pendingColumn = column;
+        cancelRunning();
+        timer.restart();
+    }
+
+    /**
+     * Отменяет запланированный и выполняющийся поиск.
+     */
+    public void cancel() {
+        timer.stop();
+        cancelRunning();
+    }
+
+    private void cancelRunning() {
+        generation++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void start() {
+        final String text = pendingText;
+        final int column = pendingColumn;
+        if (text.isEmpty()) {
+            lastText = null;
+            resultHandler.accept(new int[0]);
+            return;
+        }
+        final long version = tableModel.version();
+        final long taskGeneration = ++generation;
+        final int[] candidates = canRefine(text, column, version) ? lastRows : null;
+        DogSearchIndex index = tableModel.searchIndex();
+        DogRecordStore snapshot = tableModel.snapshot();
+        // Отменённая задача уже освободила ключ, поэтому новый запрос не считается повтором
+        running = scheduler.submit(TASK_KEY, "Поиск «" + text + "»", TaskScheduler.Kind.CPU, progress -> {
+            long start = System.nanoTime();
+            int[] rows = candidates != null
+                    ? index.refine(snapshot, column, text, candidates)
+                    : index.search(snapshot, column, text);
+            if (rows != null) {
+                DogShowMetrics.SEARCH.recordSince(start);
+            }
+            return rows;
+        }, rows -> {
+            if (rows != null) { // иначе поиск прерван более новым запросом
+                apply(taskGeneration, text, column, version, rows);
+            }
+        }, null);
+    }
+
+    /**
+     * Новый запрос можно искать среди прошлых результатов, если он их сужает
+     * и данные с тех пор не менялись.
+     */
+    private boolean canRefine(String text, int column, long version) {
+        return lastText != null && lastColumn == column && lastVersion == version
+                && text.toLowerCase(Locale.ROOT).contains(lastText.toLowerCase(Locale.ROOT));
+    }
+
+    private void apply(long taskGeneration, String text, int column, long version, int[] rows) {
+        if (taskGeneration != generation) {
+            return; // Результат устарел
+        }
+        running = null;
+        if (version != tableModel.version()) {
+            // Данные изменились во время поиска — повторяем без уточнения
+            lastText = null;
+            pendingText = text;
+            pendingColumn = column;
+            start();
+            return;
+        }
+        lastText = text;
+        lastColumn = column;
+        lastVersion = version;
+        lastRows = rows;
+        resultHandler.accept(rows);
+    }
+}
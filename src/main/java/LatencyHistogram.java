@@ -0,0 +1,154 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек без блокировок: запись из любого потока стоит
+ * нескольких атомарных операций.
+ * <p>
+ * Задержки хранятся в микросекундах по логарифмическим корзинам: каждая степень
+ * двойки делится на четыре корзины, поэтому процентиль определяется с точностью
+ * до четверти значения при фиксированном объёме памяти.
+ */
+final class LatencyHistogram implements LatencyHistogramMXBean {
+    /** Корзин хватает на задержки до 2^62 мкс. */
+    private static final int BUCKETS = 4 * 62;
+
+    private final String name;
+    private final String description;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param name        краткое имя для JMX и сводки в журнале
+     * @param description описание этапа
+     */
+    LatencyHistogram(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Учитывает длительность, отсчитанную от {@code startNanos} ({@link System#nanoTime()}).
+     *
+     * @return длительность в наносекундах
+     */
+    long recordSince(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        record(nanos);
+        return nanos;
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucket(nanos / 1000));
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : getTotalMillis() / count;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(0.50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(0.95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Возвращает верхнюю границу корзины, в которую попадает процентиль,
+     * но не больше максимального значения.
+     */
+    double percentileMillis(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i + 1) / 1e3, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Номер корзины: значения до 4 мкс — по одному на корзину, дальше — четыре
+     * корзины на каждую степень двойки (по двум старшим битам после ведущего).
+     */
+    private static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & 3;
+        return Math.min(BUCKETS - 1, 4 * (exponent - 1) + sub);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        return (long) (4 + bucket % 4) << (exponent - 2);
+    }
+}
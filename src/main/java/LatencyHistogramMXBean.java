@@ -0,0 +1,22 @@
+/**
+ * Задержки одного этапа работы приложения в JMX ({@code dogshow:type=Latency,name=...}).
+ * Значения — в миллисекундах с начала работы или последнего сброса; процентили
+ * приближённые (погрешность до четверти значения).
+ */
+public interface LatencyHistogramMXBean {
+    String getDescription();
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
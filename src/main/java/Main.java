@@ -1,153 +1,140 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.util.HashMap;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import net.sf.jasperreports.engine.*;
-import net.sf.jasperreports.engine.data.JRTableModelDataSource;
-import net.sf.jasperreports.engine.export.HtmlExporter;
-import net.sf.jasperreports.export.SimpleExporterInput;
-import net.sf.jasperreports.export.SimpleHtmlExporterOutput;
-
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-class LoadDataThread implements Runnable {
-    private DefaultTableModel tableModel;
+/**
+ * Фоновая загрузка списка собак из файла XML или двоичного снимка (формат определяется автоматически).
+ * Разбор выполняется в рабочем потоке, а готовые порции записей передаются
+ * в модель в потоке EDT через {@link #process}: порции, накопившиеся за время
+ * одной перерисовки, объединяются и добавляются одним событием.
+ * Если включён журнал изменений, после снимка применяется его журнал; если журнал
+ * прочитать не удалось, данные загружаются без него.
+ * Число прочитанных записей сообщается свойством {@code rows}; при прерывании
+ * потока загрузка останавливается, а модель очищается.
+ */
+class LoadDataThread extends SwingWorker<Long, DogBatch> {
+    private static final Logger log = Logger.getLogger(LoadDataThread.class);
+    /** Признак окончания данных в потоке порций: после него применяется журнал. */
+    private static final DogBatch END = new DogBatch(1);
+    /** Признак прерванной загрузки: уже добавленные записи удаляются. */
+    private static final DogBatch CANCELLED = new DogBatch(1);
+    private DogTableModel tableModel;
     private String filePath;
+    private boolean journaled;
+    private DogJournal journal;
+    private long startNanos;
+    private volatile long loadedRows;
 
-    public LoadDataThread(DefaultTableModel tableModel, String filePath) {
+    public LoadDataThread(DogTableModel tableModel, String filePath) {
+        this(tableModel, filePath, false);
+    }
+
+    /**
+     * @param journaled открыть журнал изменений снимка и применить его к загруженным данным
+     */
+    public LoadDataThread(DogTableModel tableModel, String filePath, boolean journaled) {
         this.tableModel = tableModel;
         this.filePath = filePath;
+        this.journaled = journaled;
     }
 
     @Override
-    public void run() {
-        synchronized (tableModel) {
-            try {
-                // Загрузка данных из XML в таблицу
-                File file = new File(filePath);
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.parse(file);
-                doc.getDocumentElement().normalize();
-
-                tableModel.setRowCount(0); // Очистка данных таблицы
-
-                NodeList dogList = doc.getElementsByTagName("dog");
-                for (int i = 0; i < dogList.getLength(); i++) {
-                    Node dogNode = dogList.item(i);
-                    if (dogNode.getNodeType() == Node.ELEMENT_NODE) {
-                        Element dogElement = (Element) dogNode;
-                        String name = dogElement.getAttribute("name");
-                        String breed = dogElement.getAttribute("breed");
-                        String owner = dogElement.getAttribute("owner");
-                        String judge = dogElement.getAttribute("judge");
-                        String award = dogElement.getAttribute("award");
-                        tableModel.addRow(new String[]{name, breed, owner, judge, award});
-                    }
+    protected Long doInBackground() throws Exception {
+        // Потоковая загрузка данных из файла в таблицу порциями
+        long start = System.nanoTime();
+        startNanos = start;
+        SwingUtilities.invokeAndWait(tableModel::clear); // Очистка данных таблицы
+
+        Path path = Paths.get(filePath);
+        DogSnapshotFormat format = DogSnapshotFormat.of(path);
+        long[] count = new long[1];
+        SnapshotInfo snapshot;
+        long parseStart = System.nanoTime();
+        try {
+            snapshot = format.read(path, batch -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Загрузка файла прервана: " + filePath);
                 }
-                tableModel.notify(); // Уведомляем следующий поток
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+                count[0] += batch.size();
+                publish(batch);
+                firePropertyChange("rows", null, count[0]);
+            });
+        } catch (InterruptedException e) {
+            publish(CANCELLED);
+            throw e;
         }
-    }
-}
-
-class SaveDataThread implements Runnable {
-    private DefaultTableModel tableModel;
-    private String filePath;
+        DogShowMetrics.PARSE.recordSince(parseStart);
 
-    public SaveDataThread(DefaultTableModel tableModel, String filePath) {
-        this.tableModel = tableModel;
-        this.filePath = filePath;
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Загружено записей: " + count[0] + " (" + format + ") за " + elapsedMs + " мс ("
+                + (count[0] * 1000 / elapsedMs) + " записей/с)");
+        if (journaled) {
+            try {
+                journal = DogJournal.open(path, snapshot);
+            } catch (IOException e) {
+                log.warn("Журнал изменений файла " + filePath + " недоступен, данные загружены без него: "
+                        + e.getMessage());
+            }
+        }
+        loadedRows = count[0];
+        publish(END);
+        return count[0];
     }
 
     @Override
-    public void run() {
-        synchronized (tableModel) {
-            try {
-                // Сохранение данных в XML
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.newDocument();
-
-                Element rootElement = doc.createElement("doglist");
-                doc.appendChild(rootElement);
-
-                for (int i = 0; i < tableModel.getRowCount(); i++) {
-                    Element dogElement = doc.createElement("dog");
-                    dogElement.setAttribute("name", (String) tableModel.getValueAt(i, 0));
-                    dogElement.setAttribute("breed", (String) tableModel.getValueAt(i, 1));
-                    dogElement.setAttribute("owner", (String) tableModel.getValueAt(i, 2));
-                    dogElement.setAttribute("judge", (String) tableModel.getValueAt(i, 3));
-                    dogElement.setAttribute("award", (String) tableModel.getValueAt(i, 4));
-                    rootElement.appendChild(dogElement);
+    protected void process(List<DogBatch> chunks) {
+        if (chunks.get(chunks.size() - 1) == CANCELLED) {
+            tableModel.clear(); // частично загруженные данные не должны попасть в сохранение
+            return;
+        }
+        boolean finished = chunks.get(chunks.size() - 1) == END;
+        tableModel.addBatches(finished ? chunks.subList(0, chunks.size() - 1) : chunks);
+        if (finished) {
+            if (journal != null) {
+                for (DogJournal.Operation operation : journal.recoveredOperations()) {
+                    operation.apply(tableModel);
                 }
-
-                TransformerFactory transformerFactory = TransformerFactory.newInstance();
-                Transformer transformer = transformerFactory.newTransformer();
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                DOMSource domSource = new DOMSource(doc);
-                StreamResult streamResult = new StreamResult(new File(filePath));
-                transformer.transform(domSource, streamResult);
-
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+            long nanos = DogShowMetrics.LOAD.recordSince(startNanos);
+            DogShowMetrics.loaded(loadedRows, nanos, tableModel.getRowCount(), tableModel.memoryFootprint());
+            loaded(journal);
         }
     }
-}
-
-class GenerateReportThread implements Runnable {
-    private DefaultTableModel tableModel;
-    private String reportPath;
 
-    public GenerateReportThread(DefaultTableModel tableModel, String reportPath) {
-        this.tableModel = tableModel;
-        this.reportPath = reportPath;
+    /**
+     * Вызывается в EDT, когда все данные (и журнал, если он открыт) применены к модели.
+     *
+     * @param journal открытый журнал снимка или {@code null}, если журнал не используется или недоступен
+     */
+    protected void loaded(DogJournal journal) {
+        log.info("Данные успешно загружены из файла: " + new File(filePath).getName()
+                + ", объём данных в памяти: " + tableModel.memoryFootprint() / 1024 + " КБ");
     }
 
     @Override
-    public void run() {
+    protected void done() {
         try {
-            // Генерация HTML-отчёта
-            String jrxmlPath = "src/main/resources/DogShowReport.jrxml";
-            JasperReport jasperReport = JasperCompileManager.compileReport(jrxmlPath);
-            JRTableModelDataSource dataSource = new JRTableModelDataSource(tableModel);
-
-            HashMap<String, Object> parameters = new HashMap<>();
-            parameters.put("ReportTitle", "Отчет о собаках");
-            parameters.put("Author", "Dog Show Administration");
-
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, dataSource);
-
-            HtmlExporter exporter = new HtmlExporter();
-            exporter.setExporterInput(new SimpleExporterInput(jasperPrint));
-            exporter.setExporterOutput(new SimpleHtmlExporterOutput(reportPath));
-
-            // Отключение лишних логов JasperReports
-            JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance())
-                    .setProperty("net.sf.jasperreports.debug", "false");
-
-            exporter.exportReport();
-
+            get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                log.info(e.getCause().getMessage());
+            } else {
+                log.error("Ошибка при загрузке файла: " + filePath, e.getCause());
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Ошибка при загрузке файла: " + filePath, e);
         }
     }
 }
@@ -168,11 +155,17 @@ class InvalidSelectionException extends Exception {
 public class Main {
     private static final Logger log = Logger.getLogger(Main.class);
     private JFrame mainFrame;
-    private DefaultTableModel tableModel;
+    private DogTableModel tableModel;
     private JTable dataTable;
+    private RowSelectionModel selectionModel;
+    private DogRowSorter rowSorter;
     private JTextField searchField;
     private JComboBox<String> searchCriteriaComboBox;
+    private IncrementalSearch incrementalSearch;
+    private String[] filterCriteria;
     private boolean unsavedChanges = false;
+    private DogJournal journal;
+    private final TaskScheduler scheduler = new TaskScheduler();
 
     /**
      * Метод для построения и визуализации экранной формы.
@@ -191,8 +184,12 @@ public class Main {
         JButton editDogButton = new JButton("Изменить");
         JButton deleteDogButton = new JButton("Удалить");
         JButton loadDogButton = new JButton("Загрузить");
+        JButton mergeDogButton = new JButton("Слияние");
         JButton saveDogButton = new JButton("Сохранить");
         JButton reportButton = new JButton("Отчет");
+        JButton batchReportButton = new JButton("Отчеты по группам");
+        JButton statisticsButton = new JButton("Статистика");
+        JButton archiveButton = new JButton("Архив");
 
         // Панель инструментов с кнопками
         JToolBar toolBar = new JToolBar("Панель инструментов");
@@ -200,15 +197,26 @@ public class Main {
         toolBar.add(editDogButton);
         toolBar.add(deleteDogButton);
         toolBar.add(loadDogButton);
+        toolBar.add(mergeDogButton);
         toolBar.add(saveDogButton);
         toolBar.add(reportButton);
+        toolBar.add(batchReportButton);
+        toolBar.add(statisticsButton);
+        toolBar.add(archiveButton);
 
         mainPanel.add(toolBar, BorderLayout.NORTH);
 
         // Данные для таблицы
-        String[] columns = {"Кличка", "Порода", "Владелец", "Судья", "Награды"};
-        tableModel = new DefaultTableModel(columns, 0);
+        String[] columns = DogRecordStore.columnTitles();
+        tableModel = new DogTableModel(columns);
+        // Группировки для итогов отчёта поддерживаются постоянно, чтобы отчёт не проходил по всем записям
+        tableModel.groupBy(DogRecordStore.BREED);
+        tableModel.groupBy(DogRecordStore.JUDGE, DogRecordStore.AWARD);
         dataTable = new JTable(tableModel);
+        selectionModel = new RowSelectionModel();
+        dataTable.setSelectionModel(selectionModel);
+        rowSorter = new DogRowSorter(tableModel);
+        dataTable.setRowSorter(rowSorter); // Сортировка по щелчку на заголовке и фильтрация без копирования модели
         dataTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Позволяем множественный выбор строк
         JScrollPane scrollPane = new JScrollPane(dataTable);
 
@@ -219,14 +227,43 @@ public class Main {
         searchCriteriaComboBox = new JComboBox<>(new String[]{"По кличке", "По породе", "По владельцу", "По судье", "По награде"});
         searchField = new JTextField(15);
         JButton searchButton = new JButton("Поиск");
+        JButton filterButton = new JButton("Фильтр");
 
         searchPanel.add(searchCriteriaComboBox);
         searchPanel.add(searchField);
         searchPanel.add(searchButton);
+        searchPanel.add(filterButton);
+
+        // Строка состояния фоновых задач под панелью поиска
+        TaskStatusBar statusBar = new TaskStatusBar();
+        scheduler.addStatusListener(statusBar);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(searchPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
 
-        mainPanel.add(searchPanel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
         mainFrame.add(mainPanel);
 
+        // Поиск по мере ввода: выполняется в фоне после паузы во вводе
+        incrementalSearch = new IncrementalSearch(scheduler, tableModel, this::selectModelRows);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                scheduleSearch();
+            }
+        });
+        searchCriteriaComboBox.addActionListener(e -> scheduleSearch());
+
         // Логика для кнопки "Поиск"
         searchButton.addActionListener(e -> {
             String searchText = searchField.getText().trim();
@@ -239,10 +276,31 @@ public class Main {
             }
 
             // Выполнение поиска
+            incrementalSearch.cancel();
             performSearch();
             log.info("Поиск завершен.");
         });
 
+        // Логика для кнопки "Фильтр": отбор по нескольким колонкам одновременно
+        filterButton.addActionListener(e -> {
+            log.info("Нажата кнопка 'Фильтр'.");
+            FilterDialog dialog = new FilterDialog(mainFrame, columns, filterCriteria);
+            dialog.setVisible(true);
+            String[] criteria = dialog.getCriteria();
+            if (criteria == null) {
+                return;
+            }
+            filterCriteria = criteria;
+            DogRowFilter filter = new DogRowFilter(tableModel.store());
+            for (int i = 0; i < criteria.length; i++) {
+                filter.contains(i, criteria[i]);
+            }
+            long start = System.nanoTime();
+            rowSorter.setRowFilter(filter.isEmpty() ? null : filter);
+            log.info("Фильтр применён за " + (System.nanoTime() - start) / 1_000_000 + " мс, показано строк: "
+                    + dataTable.getRowCount() + " из " + tableModel.getRowCount());
+        });
+
         // Логика для кнопки "Добавить"
         addDogButton.addActionListener(e -> {
             log.info("Нажата кнопка 'Добавить'.");
@@ -252,7 +310,9 @@ public class Main {
             if (newData != null) {
                 tableModel.addRow(newData);
                 unsavedChanges = true;
-                log.debug("Добавлена новая собака: " + String.join(", ", newData));
+                if (log.isDebugEnabled()) {
+                    log.debug("Добавлена новая собака: " + String.join(", ", newData));
+                }
                 JOptionPane.showMessageDialog(mainFrame, "Добавлена новая собака");
             }
         });
@@ -262,7 +322,11 @@ public class Main {
             log.info("Нажата кнопка 'Изменить'.");
             try {
                 validateSelectionForEdit(dataTable);
-                int selectedRow = dataTable.getSelectedRow();
+                if (dataTable.getSelectedRowCount() > 1) {
+                    editSelectedColumn();
+                    return;
+                }
+                int selectedRow = dataTable.convertRowIndexToModel(dataTable.getSelectedRow());
                 String[] currentData = new String[tableModel.getColumnCount()];
                 for (int i = 0; i < tableModel.getColumnCount(); i++) {
                     currentData[i] = (String) tableModel.getValueAt(selectedRow, i);
@@ -275,7 +339,9 @@ public class Main {
                         tableModel.setValueAt(updatedData[i], selectedRow, i);
                     }
                     unsavedChanges = true;
-                    log.debug("Обновлены данные собаки: " + String.join(", ", updatedData));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Обновлены данные собаки: " + String.join(", ", updatedData));
+                    }
                     JOptionPane.showMessageDialog(mainFrame, "Информация изменена");
                 }
             } catch (InvalidSelectionException ex) {
@@ -288,20 +354,20 @@ public class Main {
         deleteDogButton.addActionListener(e -> {
             log.info("Нажата кнопка 'Удалить'.");
             try {
-                int[] selectedRows = dataTable.getSelectedRows();
+                int[] selectedRows = getSelectedModelRows();
 
                 if (selectedRows.length == 0) {
                     log.warn("Попытка удаления без выбора строки.");
                     throw new InvalidSelectionException("Не выбраны строки для удаления.");
                 }
 
-                for (int i = selectedRows.length - 1; i >= 0; i--) {
-                    log.debug("Удаляется строка с индексом: " + selectedRows[i]);
-                    tableModel.removeRow(selectedRows[i]);
+                if (log.isDebugEnabled()) {
+                    log.debug("Удаляются строки с индексами: " + Arrays.toString(selectedRows));
                 }
+                tableModel.removeRows(selectedRows); // один проход по данным и одно событие
 
                 unsavedChanges = true;
-                log.info("Выбранные записи удалены.");
+                log.info("Выбранные записи удалены: " + selectedRows.length);
                 JOptionPane.showMessageDialog(mainFrame, "Выбранные записи удалены");
             } catch (InvalidSelectionException ex) {
                 log.warn("Ошибка при удалении строки: " + ex.getMessage());
@@ -323,40 +389,46 @@ public class Main {
             }
 
             File selectedFile = fileChooser.getSelectedFile();
-            log.debug("Пользователь выбрал файл: " + selectedFile.getAbsolutePath());
-            Thread loadDataThread = new Thread(() -> {
-                try {
-                    new LoadDataThread(tableModel, selectedFile.getAbsolutePath()).run();
-                    SwingUtilities.invokeLater(() -> log.info("Данные успешно загружены из файла: " + selectedFile.getName()));
-                } catch (Exception ex) {
-                    log.error("Ошибка при загрузке файла: " + ex.getMessage());
-                }
-            });
-            loadDataThread.start();
+            if (log.isDebugEnabled()) {
+                log.debug("Пользователь выбрал файл: " + selectedFile.getAbsolutePath());
+            }
+            startLoad(selectedFile);
+        });
+
+        // Реализация кнопки "Слияние"
+        mergeDogButton.addActionListener(e -> {
+            log.info("Нажата кнопка 'Слияние'.");
+            mergeFiles();
         });
 
         // Реализация кнопки "Сохранить"
         saveDogButton.addActionListener(e -> {
             log.info("Нажата кнопка 'Сохранить'.");
-            Thread saveThread = new Thread(() -> {
-                saveDataToXMLFile();
-                SwingUtilities.invokeLater(() -> log.info("Сохранение данных завершено."));
-            });
-            saveThread.start();
+            saveDataToXMLFile();
         });
 
         // Логика для кнопки "Отчет"
         reportButton.addActionListener(e -> {
             log.info("Нажата кнопка 'Отчет'.");
-            Thread reportThread = new Thread(() -> {
-                try {
-                    generateHtmlReport(); // Метод, создающий отчёт
-                    SwingUtilities.invokeLater(() -> log.info("Формирование отчета завершено."));
-                } catch (Exception ex) {
-                    log.error("Ошибка при формировании отчета: " + ex.getMessage());
-                }
-            });
-            reportThread.start();
+            generateHtmlReport(); // Метод, создающий отчёт в фоновом потоке
+        });
+
+        // Логика для кнопки "Отчеты по группам"
+        batchReportButton.addActionListener(e -> {
+            log.info("Нажата кнопка 'Отчеты по группам'.");
+            generateBatchReports();
+        });
+
+        // Реализация кнопки "Статистика"
+        statisticsButton.addActionListener(e -> {
+            log.info("Нажата кнопка 'Статистика'.");
+            new DogStatisticsDialog(mainFrame, tableModel).setVisible(true);
+        });
+
+        // Реализация кнопки "Архив"
+        archiveButton.addActionListener(e -> {
+            log.info("Нажата кнопка 'Архив'.");
+            openArchive();
         });
 
         // Обработка закрытия окна
@@ -376,10 +448,12 @@ public class Main {
                         saveDataToXMLFile();
                     } else if (response == JOptionPane.NO_OPTION) {
                         log.info("Программа закрыта без сохранения изменений.");
+                        closeJournal(); // несохранённые изменения не попадают в журнал
                         mainFrame.dispose();
                     }
                 } else {
                     log.info("Программа закрыта.");
+                    closeJournal();
                     mainFrame.dispose();
                 }
             }
@@ -388,6 +462,13 @@ public class Main {
         mainFrame.setVisible(true);
     }
 
+    /**
+     * Планирует поиск по мере ввода с текущим текстом и критерием.
+     */
+    private void scheduleSearch() {
+        incrementalSearch.schedule(searchField.getText(), searchCriteriaComboBox.getSelectedIndex());
+    }
+
     /**
      * Выполняет пoиск по выбранному критерию и подсвечивает все строки с совпадениями.
      */
@@ -399,20 +480,48 @@ public class Main {
         }
 
         int searchColumn = searchCriteriaComboBox.getSelectedIndex();
-        dataTable.clearSelection(); // Снимаем выделение перед поиском
-
-        boolean found = false;
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            String cellValue = tableModel.getValueAt(i, searchColumn).toString().toLowerCase();
-            if (cellValue.contains(searchText)) {
-                dataTable.addRowSelectionInterval(i, i); // Подсвечиваем строку
-                found = true;
+        long start = System.nanoTime();
+        int[] foundRows = tableModel.search(searchColumn, searchText);
+        DogShowMetrics.SEARCH.recordSince(start);
+        int selected = selectModelRows(foundRows); // Подсвечиваем найденные строки одним событием
+
+        if (selected == 0) {
+            JOptionPane.showMessageDialog(mainFrame, "Совпадения не найдены.");
+        }
+    }
+
+    /**
+     * Выделяет строки модели, пересчитывая их в номера строк представления
+     * (с учётом сортировки и фильтра).
+     *
+     * @param modelRows номера строк модели
+     * @return количество выделенных строк, видимых в представлении
+     */
+    private int selectModelRows(int[] modelRows) {
+        int[] viewRows = new int[modelRows.length];
+        int count = 0;
+        for (int modelRow : modelRows) {
+            int viewRow = dataTable.convertRowIndexToView(modelRow);
+            if (viewRow != -1) {
+                viewRows[count++] = viewRow;
             }
         }
+        viewRows = Arrays.copyOf(viewRows, count);
+        Arrays.sort(viewRows);
+        selectionModel.setSelectedRows(viewRows);
+        return count;
+    }
 
-        if (!found) {
-            JOptionPane.showMessageDialog(mainFrame, "Совпадения не найдены.");
+    /**
+     * Возвращает выделенные строки в номерах модели по возрастанию.
+     */
+    private int[] getSelectedModelRows() {
+        int[] rows = dataTable.getSelectedRows();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = dataTable.convertRowIndexToModel(rows[i]);
         }
+        Arrays.sort(rows);
+        return rows;
     }
 
     /**
@@ -424,38 +533,202 @@ public class Main {
         int result = fileChooser.showOpenDialog(mainFrame);
 
         if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = fileChooser.getSelectedFile();
-            Thread loadDataThread = new Thread(() -> {
-                new LoadDataThread(tableModel, selectedFile.getAbsolutePath()).run();
-                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainFrame, "Данные успешно загружены из файла: " + selectedFile.getName()));
-            });
-            loadDataThread.start();
+            startLoad(fileChooser.getSelectedFile());
         } else {
             JOptionPane.showMessageDialog(mainFrame, "Загрузка отменена.");
         }
     }
 
+    /**
+     * Запускает фоновую загрузку файла. Журнал текущего файла закрывается,
+     * а после загрузки к модели подключается журнал нового файла.
+     */
+    private void startLoad(File selectedFile) {
+        closeJournal();
+        LoadDataThread loader = new LoadDataThread(tableModel, selectedFile.getAbsolutePath(), true) {
+            @Override
+            protected void loaded(DogJournal loadedJournal) {
+                super.loaded(loadedJournal);
+                if (loadedJournal != null) {
+                    loadedJournal.attach(tableModel);
+                    journal = loadedJournal;
+                }
+                unsavedChanges = false;
+            }
+        };
+        scheduler.submit("load", "Загрузка " + selectedFile.getName(), TaskScheduler.Kind.IO, progress -> {
+            loader.addPropertyChangeListener(event -> {
+                if ("rows".equals(event.getPropertyName())) {
+                    progress.update(-1, "записей: " + event.getNewValue());
+                }
+            });
+            loader.run(); // doInBackground в потоке задачи, порции передаются в EDT
+            try {
+                return loader.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }, null, null);
+    }
+
+    /**
+     * Добавляет к таблице записи нескольких файлов без повторов: файлы разбираются
+     * параллельно в фоне, записи сопоставляются по выбранному ключу, а по завершении
+     * показывается отчёт с конфликтами. Изменения попадают в журнал текущего файла.
+     */
+    private void mergeFiles() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        fileChooser.setMultiSelectionEnabled(true);
+        if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION
+                || fileChooser.getSelectedFiles().length == 0) {
+            return;
+        }
+        File[] selectedFiles = fileChooser.getSelectedFiles();
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 2));
+        panel.add(new JLabel("Выбрано файлов: " + selectedFiles.length + ". Одинаковые записи — с совпадающими колонками:"));
+        String[] columns = tableModel.columnNames();
+        JCheckBox[] keyBoxes = new JCheckBox[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            keyBoxes[c] = new JCheckBox(columns[c]);
+            panel.add(keyBoxes[c]);
+        }
+        for (int column : DogMerge.DEFAULT_KEY) {
+            keyBoxes[column].setSelected(true);
+        }
+        panel.add(new JLabel("При расхождении остальных колонок:"));
+        JRadioButton keepButton = new JRadioButton("оставить прежние значения", true);
+        JRadioButton replaceButton = new JRadioButton("заменить значениями из файла");
+        ButtonGroup policyGroup = new ButtonGroup();
+        policyGroup.add(keepButton);
+        policyGroup.add(replaceButton);
+        panel.add(keepButton);
+        panel.add(replaceButton);
+        if (JOptionPane.showConfirmDialog(mainFrame, panel, "Слияние файлов",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        int[] key = new int[columns.length];
+        int keyLength = 0;
+        for (int c = 0; c < keyBoxes.length; c++) {
+            if (keyBoxes[c].isSelected()) {
+                key[keyLength++] = c;
+            }
+        }
+        if (keyLength == 0) {
+            JOptionPane.showMessageDialog(mainFrame, "Не выбраны колонки для сравнения записей.");
+            return;
+        }
+        int[] keyColumns = Arrays.copyOf(key, keyLength);
+        DogMerge.Policy policy = replaceButton.isSelected() ? DogMerge.Policy.REPLACE : DogMerge.Policy.KEEP_EXISTING;
+
+        List<Path> paths = new ArrayList<>(selectedFiles.length);
+        for (File file : selectedFiles) {
+            paths.add(file.toPath());
+        }
+        DogRecordStore base = tableModel.snapshot();
+        long version = tableModel.version();
+        List<List<DogMerge.Source>> parsed = new ArrayList<>(1);
+        scheduler.submit("load", "Слияние файлов: " + paths.size(), TaskScheduler.Kind.IO, progress -> {
+            progress.update(-1, "разбор файлов");
+            long parseStart = System.nanoTime();
+            List<DogMerge.Source> sources = DogMerge.read(paths, scheduler.cpuExecutor());
+            DogShowMetrics.PARSE.recordSince(parseStart);
+            parsed.add(sources);
+            progress.update(-1, "поиск повторов");
+            return DogMerge.merge(base, sources, keyColumns, policy);
+        }, result -> applyMerge(parsed.get(0), result, version, keyColumns, policy), this::mergeFailed);
+    }
+
+    /**
+     * Применяет результат слияния к таблице и показывает отчёт. Если таблицу изменили,
+     * пока слияние выполнялось в фоне, оно повторяется в фоне по новому снимку таблицы
+     * и уже разобранным файлам.
+     *
+     * @param version версия модели, по снимку которой выполнено слияние
+     */
+    private void applyMerge(List<DogMerge.Source> sources, DogMerge.Result merged, long version,
+                            int[] keyColumns, DogMerge.Policy policy) {
+        if (tableModel.version() != version) {
+            DogRecordStore base = tableModel.snapshot();
+            long current = tableModel.version();
+            scheduler.submit("load", "Повтор слияния: таблица изменилась", TaskScheduler.Kind.CPU,
+                    progress -> DogMerge.merge(base, sources, keyColumns, policy),
+                    result -> applyMerge(sources, result, current, keyColumns, policy), this::mergeFailed);
+            return;
+        }
+        merged.apply(tableModel);
+        if (merged.addedCount() > 0 || merged.replacedCount() > 0) {
+            unsavedChanges = true;
+        }
+        JTextArea report = new JTextArea(merged.report(1000), 20, 80);
+        report.setEditable(false);
+        JOptionPane.showMessageDialog(mainFrame, new JScrollPane(report), "Итоги слияния",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void mergeFailed(Exception ex) {
+        JOptionPane.showMessageDialog(mainFrame, "Не удалось выполнить слияние: " + ex.getMessage());
+    }
+
+    /**
+     * Отключает журнал от модели и закрывает его в фоне. Уже запрошенные сохранения
+     * дописываются, а несохранённые изменения в журнал не попадают.
+     */
+    private void closeJournal() {
+        DogJournal previous = journal;
+        if (previous == null) {
+            return;
+        }
+        journal = null;
+        previous.detach();
+        scheduler.submit(null, "Закрытие журнала", TaskScheduler.Kind.IO, progress -> {
+            previous.close();
+            return null;
+        }, null, null);
+    }
+
     /**
      * Метод для сохранения данных из таблицы в файл.
+     * Если выбран файл, к которому подключён журнал, в журнал дописываются изменения
+     * с прошлого сохранения (время не зависит от объёма данных). Иначе, а также если
+     * прошлая запись журнала не удалась, в фоне записывается полный снимок, и дальнейшие
+     * сохранения пишут журнал заново.
      */
     private void saveDataToXMLFile() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
         int result = fileChooser.showSaveDialog(mainFrame);
 
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = fileChooser.getSelectedFile();
-            Thread saveDataThread = new Thread(() -> {
-                new SaveDataThread(tableModel, selectedFile.getAbsolutePath()).run();
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(mainFrame, "Данные успешно сохранены в файл: " + selectedFile.getName());
-                    unsavedChanges = false; // Сбрасываем флаг после сохранения
-                });
-            });
-            saveDataThread.start();
-        } else {
+        if (result != JFileChooser.APPROVE_OPTION) {
             JOptionPane.showMessageDialog(mainFrame, "Сохранение отменено.");
+            return;
+        }
+        File selectedFile = fileChooser.getSelectedFile();
+        Path target = selectedFile.toPath().toAbsolutePath().normalize();
+        DogJournal targetJournal = journal;
+        if (targetJournal == null || !targetJournal.snapshotPath().equals(target) || targetJournal.failed()) {
+            // После ошибки записи журнала (например, диск был заполнен) сохраняем полный снимок заново
+            closeJournal();
+            targetJournal = DogJournal.create(target, tableModel);
+            journal = targetJournal;
         }
+
+        // Фиксация запрашивается в EDT, чтобы в неё попали ровно изменения, сделанные до сохранения
+        DogJournal.Commit commit = targetJournal.commit();
+        long version = tableModel.version();
+        scheduler.submit("save", "Сохранение " + selectedFile.getName(), TaskScheduler.Kind.IO, progress -> {
+            long start = System.nanoTime();
+            commit.await();
+            log.info("Изменения зафиксированы за " + DogShowMetrics.COMMIT.recordSince(start) / 1_000_000 + " мс.");
+            return null;
+        }, ignored -> {
+            JOptionPane.showMessageDialog(mainFrame, "Данные успешно сохранены в файл: " + selectedFile.getName());
+            if (tableModel.version() == version) {
+                unsavedChanges = false; // Сбрасываем флаг после сохранения
+            }
+        }, ex -> JOptionPane.showMessageDialog(mainFrame, "Не удалось сохранить данные: " + ex.getMessage()));
     }
 
     /**
@@ -465,15 +738,89 @@ public class Main {
      */
     private void generateHtmlReport() {
         String reportPath = "DogShowReport.html"; // Фиксированный путь для отчёта
-        Thread generateReportThread = new Thread(() -> {
-            try {
-                new GenerateReportThread(tableModel, reportPath).run();
-                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainFrame, "Отчет успешно создан: " + reportPath));
-            } catch (Exception e) {
-                log.error("Ошибка при формировании отчета: " + e.getMessage(), e);
-            }
-        });
-        generateReportThread.start();
+        GenerateReportThread report = new GenerateReportThread(tableModel, reportPath); // снимок данных в EDT
+        scheduler.submit("report", "Отчет", TaskScheduler.Kind.CPU, progress -> {
+            report.generate();
+            return reportPath;
+        }, path -> {
+            log.info("Формирование отчета завершено.");
+            JOptionPane.showMessageDialog(mainFrame, "Отчет успешно создан: " + path);
+        }, ex -> JOptionPane.showMessageDialog(mainFrame, "Не удалось сформировать отчет: " + ex.getMessage()));
+    }
+
+    /**
+     * Формирует отдельные отчёты HTML и PDF для каждого судьи или каждой породы
+     * в каталоге {@code reports} рабочей директории. Ход выполнения показывается
+     * в строке состояния, а по завершении — сводка.
+     */
+    private void generateBatchReports() {
+        String[] options = {"По судьям", "По породам"};
+        int choice = JOptionPane.showOptionDialog(mainFrame, "Сформировать отчёты:", "Отчеты по группам",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice < 0) {
+            return;
+        }
+        int groupColumn = choice == 0 ? DogRecordStore.JUDGE : DogRecordStore.BREED;
+        Path outputDirectory = Paths.get(System.getProperty("user.dir"), "reports");
+        BatchReportGenerator generator = new BatchReportGenerator(tableModel, groupColumn, outputDirectory);
+        scheduler.submit("batch-report", "Отчеты по группам", TaskScheduler.Kind.IO, progress ->
+                generator.generate(scheduler.cpuExecutor(), (result, finished, total) ->
+                        progress.update(finished * 100 / total, finished + " из " + total + ": " + result.group)),
+                results -> {
+                    long failed = results.stream().filter(result -> result.error != null).count();
+                    JOptionPane.showMessageDialog(mainFrame, "Сформировано отчётов: " + results.size()
+                            + (failed > 0 ? " (с ошибками: " + failed + ")" : "")
+                            + "\nКаталог: " + outputDirectory);
+                },
+                ex -> JOptionPane.showMessageDialog(mainFrame, "Не удалось сформировать отчёты: " + ex.getMessage()));
+    }
+
+    /**
+     * Открывает файл двоичного формата в отдельном окне только для чтения, не загружая
+     * его в память: так просматриваются архивы выставок, которые не помещаются в кучу.
+     */
+    private void openArchive() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File selectedFile = fileChooser.getSelectedFile();
+        try {
+            DogArchiveViewer.open(mainFrame, selectedFile.toPath(), scheduler.ioExecutor());
+            log.info("Открыт архив " + selectedFile.getAbsolutePath());
+        } catch (IOException | RuntimeException ex) {
+            log.error("Не удалось открыть архив " + selectedFile.getAbsolutePath(), ex);
+            JOptionPane.showMessageDialog(mainFrame, "Не удалось открыть архив: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Устанавливает одно значение выбранной колонки во всех выделенных строках,
+     * например назначает судью или награду группе собак.
+     */
+    private void editSelectedColumn() {
+        int[] rows = getSelectedModelRows();
+        JComboBox<String> columnBox = new JComboBox<>(tableModel.columnNames());
+        columnBox.setSelectedIndex(DogRecordStore.JUDGE);
+        JTextField valueField = new JTextField(20);
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 4));
+        panel.add(new JLabel("Выбрано записей: " + rows.length + ". Колонка:"));
+        panel.add(columnBox);
+        panel.add(new JLabel("Новое значение:"));
+        panel.add(valueField);
+        int response = JOptionPane.showConfirmDialog(mainFrame, panel, "Изменить выбранные записи",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (response != JOptionPane.OK_OPTION) {
+            return;
+        }
+        int column = columnBox.getSelectedIndex();
+        String value = valueField.getText().trim();
+        tableModel.setColumnValue(rows, column, value);
+        selectModelRows(rows); // выделение остаётся на изменённых записях
+        unsavedChanges = true;
+        log.info("Колонка «" + tableModel.getColumnName(column) + "» изменена у записей: " + rows.length);
+        JOptionPane.showMessageDialog(mainFrame, "Информация изменена у записей: " + rows.length);
     }
 
     /**
@@ -619,12 +966,93 @@ public class Main {
         }
     }
 
+    /**
+     * Диалоговое окно для задания условий фильтра по колонкам.
+     * Пустое поле означает отсутствие условия по колонке.
+     */
+    private static class FilterDialog extends JDialog {
+        private final JTextField[] fields;
+        private String[] criteria;
+
+        public FilterDialog(JFrame parent, String[] columns, String[] currentCriteria) {
+            super(parent, "Фильтр", true);
+            setLayout(new GridBagLayout());
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.insets = new Insets(5, 5, 5, 5);
+
+            Dimension fieldSize = new Dimension(200, 25);
+            fields = new JTextField[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                gbc.gridx = 0;
+                gbc.gridy = i;
+                gbc.anchor = GridBagConstraints.EAST;
+                add(new JLabel(columns[i] + " содержит:"), gbc);
+                fields[i] = new JTextField(currentCriteria == null ? "" : currentCriteria[i]);
+                fields[i].setPreferredSize(fieldSize);
+                gbc.gridx = 1;
+                gbc.anchor = GridBagConstraints.WEST;
+                add(fields[i], gbc);
+            }
+
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+            JButton applyButton = new JButton("Применить");
+            JButton resetButton = new JButton("Сбросить");
+            JButton cancelButton = new JButton("Отмена");
+            buttonPanel.add(applyButton);
+            buttonPanel.add(resetButton);
+            buttonPanel.add(cancelButton);
+
+            gbc.gridx = 0;
+            gbc.gridy = columns.length;
+            gbc.gridwidth = 2;
+            gbc.anchor = GridBagConstraints.CENTER;
+            add(buttonPanel, gbc);
+
+            applyButton.addActionListener(e -> {
+                criteria = new String[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    criteria[i] = fields[i].getText();
+                }
+                setVisible(false);
+            });
+            resetButton.addActionListener(e -> {
+                criteria = new String[fields.length];
+                Arrays.fill(criteria, "");
+                setVisible(false);
+            });
+            cancelButton.addActionListener(e -> {
+                criteria = null;
+                setVisible(false);
+            });
+
+            setSize(450, 320);
+            setLocationRelativeTo(parent);
+        }
+
+        /**
+         * Возвращает условия по колонкам.
+         *
+         * @return массив подстрок по колонкам или null, если ввод отменён
+         */
+        public String[] getCriteria() {
+            return criteria;
+        }
+    }
+
     /**
      * Главный метод для запуска приложения.
      *
      * @param args аргументы командной строки
      */
     public static void main(String[] args) {
+        // Асинхронный журнал дописывает очередь и буфер файла только при остановке log4j
+        Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "log-shutdown"));
+        if (args.length > 0) {
+            // Пакетный режим: без инициализации AWT/Swing, например для запуска по расписанию
+            System.setProperty("java.awt.headless", "true");
+            System.exit(DogShowCli.run(args, System.out, System.err));
+        }
+        DogShowMetrics.start();
         new Main().show();
     }
 }
@@ -0,0 +1,184 @@
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Модель таблицы только для чтения поверх файла двоичного формата, который
+ * не загружается в память целиком: записи читаются страницами по мере прокрутки.
+ * <p>
+ * Страницы загружаются в фоне и хранятся в кэше LRU ограниченного размера, поэтому
+ * расход памяти не зависит от числа записей. Пока страница не загружена, её ячейки
+ * показывают {@link #LOADING}; по готовности таблица получает одно событие на страницу.
+ * Видимая область сообщается через {@link #visibleRowsChanged}: вперёд по направлению
+ * прокрутки заранее загружаются следующие страницы, а запросы страниц, от которых
+ * пользователь успел уйти далеко, отбрасываются без чтения.
+ * Все методы, кроме загрузки страниц, вызываются в EDT.
+ */
+class PagedDogTableModel extends AbstractTableModel {
+    private static final Logger log = Logger.getLogger(PagedDogTableModel.class);
+    /** Записей на странице. */
+    static final int PAGE_SIZE = 512;
+    /** Значение ячейки, страница которой ещё загружается. */
+    static final String LOADING = "…";
+    /** Сколько страниц хранить в памяти. */
+    private static final int CACHED_PAGES = 128;
+    /** Сколько страниц загружать заранее в направлении прокрутки. */
+    private static final int PREFETCH_PAGES = 4;
+    /** Запрос страницы дальше этого числа страниц от видимой области отбрасывается. */
+    private static final int RELEVANT_PAGES = 2 * PREFETCH_PAGES;
+
+    private final DogArchiveFile file;
+    private final String[] columns;
+    private final Executor executor;
+    private final Map<Integer, String[][]> pages = new LinkedHashMap<Integer, String[][]>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int firstVisiblePage;
+    /** Видимые страницы для фоновых потоков: запросы далеко за их пределами не выполняются. */
+    private volatile int focusFirstPage;
+    private volatile int focusLastPage;
+    private volatile boolean closed;
+
+    /**
+     * @param executor потоки загрузки страниц
+     */
+    public PagedDogTableModel(DogArchiveFile file, String[] columns, Executor executor) {
+        this.file = file;
+        this.columns = columns.clone();
+        this.executor = executor;
+    }
+
+    @Override
+    public int getRowCount() {
+        return file.rowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        String[][] rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return LOADING;
+        }
+        return rows[row - page * PAGE_SIZE][column];
+    }
+
+    /**
+     * Сообщает модели видимый диапазон строк (номера модели), например при прокрутке.
+     * Загружает видимые страницы и заранее — следующие в направлении прокрутки.
+     */
+    public void visibleRowsChanged(int firstRow, int lastRow) {
+        if (getRowCount() == 0) {
+            return;
+        }
+        int lastPossiblePage = (getRowCount() - 1) / PAGE_SIZE;
+        int first = Math.max(0, firstRow / PAGE_SIZE);
+        int last = Math.min(lastPossiblePage, Math.max(first, lastRow / PAGE_SIZE));
+        boolean backwards = first < firstVisiblePage;
+        firstVisiblePage = first;
+        focusFirstPage = first;
+        focusLastPage = last;
+        for (int page = first; page <= last; page++) {
+            request(page);
+        }
+        for (int i = 1; i <= PREFETCH_PAGES; i++) {
+            int page = backwards ? first - i : last + i;
+            if (page >= 0 && page <= lastPossiblePage) {
+                request(page);
+            }
+        }
+    }
+
+    /**
+     * Прекращает загрузку страниц и закрывает файл.
+     */
+    public void close() {
+        closed = true;
+        pages.clear();
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warn("Ошибка при закрытии архива " + file.path() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void request(int page) {
+        if (closed || pages.containsKey(page) || !loading.add(page)) {
+            return;
+        }
+        executor.execute(() -> load(page));
+    }
+
+    /**
+     * Загружает страницу в фоновом потоке и передаёт её в EDT.
+     */
+    private void load(int page) {
+        if (closed || page < focusFirstPage - RELEVANT_PAGES || page > focusLastPage + RELEVANT_PAGES) {
+            // Пользователь уже прокрутил дальше; если он успел вернуться, страница запрашивается снова
+            SwingUtilities.invokeLater(() -> {
+                loading.remove(page);
+                if (page >= focusFirstPage && page <= focusLastPage) {
+                    request(page);
+                }
+            });
+            return;
+        }
+        int first = page * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, file.rowCount() - first);
+        String[][] rows;
+        try {
+            rows = file.readRows(first, count);
+        } catch (IOException | RuntimeException e) {
+            if (closed) {
+                return;
+            }
+            log.error("Ошибка чтения записей " + first + "–" + (first + count - 1) + " из " + file.path(), e);
+            // Страница с ошибкой остаётся в кэше, чтобы не повторять чтение при каждой перерисовке
+            rows = new String[count][];
+            Arrays.fill(rows, errorRow());
+        }
+        String[][] loaded = rows;
+        SwingUtilities.invokeLater(() -> {
+            loading.remove(page);
+            if (closed) {
+                return;
+            }
+            pages.put(page, loaded);
+            fireTableRowsUpdated(first, first + count - 1);
+        });
+    }
+
+    private String[] errorRow() {
+        String[] row = new String[columns.length];
+        Arrays.fill(row, "<ошибка чтения>");
+        return row;
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Параллельный разбор больших XML-файлов со списком собак на нескольких ядрах.
+ * <p>
+ * Файл делится на участки по границам элементов {@code <dog}:
+ * записи в файлах выставки — плоские элементы только с атрибутами, поэтому каждый участок,
+ * обёрнутый в корневой элемент, — самостоятельный XML-документ. Участки разбираются тем же
+ * разборщиком StAX, что и при последовательном чтении, в общем пуле fork-join, а порции
+ * записей передаются обработчику в порядке следования в файле. Одновременно разбирается
+ * ограниченное число участков, поэтому готовые, но ещё не переданные записи не копятся
+ * без предела. Участки читаются в кучу через {@link FileChannel#read}, а не отображаются
+ * в память: отображение освобождается только сборщиком мусора, и пока оно живо, в Windows
+ * файл нельзя заменить. Контрольная сумма всего файла считается при предварительном
+ * просмотре, который до разбора проверяет, что файл можно делить на участки.
+ * <p>
+ * Файлы с объявлением DTD, кодировкой, отличной от UTF-8, элементами перед первой
+ * записью, кроме корневого, или комментариями, секциями CDATA и инструкциями обработки
+ * между записями (в них может встретиться {@code <dog}) так не читаются: для них
+ * {@link #read} возвращает {@code null} до передачи первой порции, и используется
+ * последовательный разбор.
+ */
+final class ParallelDogXmlReader {
+    private static final Logger log = Logger.getLogger(ParallelDogXmlReader.class);
+    /**
+     * Размер файла в байтах, начиная с которого используется параллельный разбор
+     * (свойство {@code dogshow.parallelParseThreshold}; отрицательное значение отключает его).
+     */
+    static final long THRESHOLD = Long.getLong("dogshow.parallelParseThreshold", 32L << 20);
+    /** Сколько участков приходится на один поток пула: мелкие участки выравнивают нагрузку. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    /** Наибольший участок; участки ожидают разбора в куче, поэтому их размер ограничен. */
+    private static final int MAX_CHUNK_BYTES = 4 << 20;
+    /** Размер окна поиска границ записей. */
+    private static final int SCAN_WINDOW = 64 * 1024;
+    private static final byte[] DOG = {'<', 'd', 'o', 'g'};
+    private static final byte[] ROOT_START = "<doglist>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROOT_END = "</doglist>".getBytes(StandardCharsets.US_ASCII);
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private ParallelDogXmlReader() {
+    }
+
+    /**
+     * Стоит ли читать файл такого размера параллельно.
+     */
+    static boolean isWorthwhile(long size) {
+        return THRESHOLD >= 0 && size >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Читает файл параллельно и передаёт порции записей обработчику в порядке следования
+     * в файле; обработчик вызывается в текущем потоке.
+     *
+     * @return размер и контрольная сумма файла или {@code null}, если файл нельзя разделить
+     * на участки и его следует читать последовательно (в этом случае обработчик не вызывался)
+     */
+    static SnapshotInfo read(Path path, DogXmlReader.ChunkHandler handler) throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long bodyStart = nextRecord(channel, 0, size);
+            long bodyEnd = lastEndTag(channel, size);
+            if (bodyStart < 0 || bodyEnd <= bodyStart || !isSplittable(channel, bodyStart)) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            update(crc, channel, 0, bodyStart);
+            if (scanBody(channel, bodyStart, bodyEnd, crc)) {
+                log.info("В файле " + path + " есть комментарии, CDATA или инструкции обработки,"
+                        + " он будет разобран последовательно");
+                return null;
+            }
+            update(crc, channel, bodyEnd, size);
+
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES,
+                    Math.min(MAX_CHUNK_BYTES, (bodyEnd - bodyStart) / ((long) parallelism * CHUNKS_PER_THREAD)));
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(bodyStart);
+            long position = bodyStart;
+            while (position + chunkBytes < bodyEnd) {
+                position = nextRecord(channel, position + chunkBytes, bodyEnd);
+                if (position < 0) {
+                    break;
+                }
+                bounds.add(position);
+            }
+            bounds.add(bodyEnd);
+            if (log.isDebugEnabled()) {
+                log.debug("Параллельный разбор " + path + ": участков " + (bounds.size() - 1)
+                        + ", потоков " + parallelism);
+            }
+
+            // Одновременно разбирается не больше двух участков на поток пула
+            Deque<Future<List<DogBatch>>> pending = new ArrayDeque<>();
+            int next = 0;
+            try {
+                for (int chunk = 0; chunk < bounds.size() - 1; chunk++) {
+                    while (next < bounds.size() - 1 && pending.size() < 2 * parallelism) {
+                        long from = bounds.get(next);
+                        long to = bounds.get(next + 1);
+                        pending.add(ForkJoinPool.commonPool().submit(() -> parse(path, channel, from, to)));
+                        next++;
+                    }
+                    List<DogBatch> batches;
+                    try {
+                        batches = pending.remove().get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                    for (DogBatch batch : batches) {
+                        handler.onChunk(batch);
+                    }
+                }
+            } finally {
+                for (Future<List<DogBatch>> future : pending) {
+                    future.cancel(true);
+                }
+            }
+            return new SnapshotInfo(size, crc.getValue());
+        }
+    }
+
+    /**
+     * Читает участок файла с {@code from} до {@code to} и разбирает его как содержимое
+     * корневого элемента.
+     */
+    private static List<DogBatch> parse(Path path, FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer body = ByteBuffer.allocate((int) (to - from));
+        readFully(channel, body, from);
+        List<DogBatch> batches = new ArrayList<>();
+        InputStream document = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteBufferInputStream(ByteBuffer.wrap(ROOT_START)),
+                new ByteBufferInputStream(body),
+                new ByteBufferInputStream(ByteBuffer.wrap(ROOT_END)))));
+        try {
+            new DogXmlReader().read(document, batches::add);
+        } catch (Exception e) {
+            throw new IOException("Ошибка разбора XML в байтах " + from + "–" + to + " файла " + path
+                    + ": " + e.getMessage(), e);
+        }
+        return batches;
+    }
+
+    /**
+     * Проверяет пролог файла до первой записи: участки разбираются без него,
+     * поэтому в нём не должно быть DTD и кодировки, отличной от UTF-8, а из элементов —
+     * только открытый корневой.
+     */
+    private static boolean isSplittable(FileChannel channel, long bodyStart) throws IOException {
+        if (bodyStart > SCAN_WINDOW) {
+            return false;
+        }
+        ByteBuffer prolog = ByteBuffer.allocate((int) bodyStart);
+        readFully(channel, prolog, 0);
+        String text = new String(prolog.array(), StandardCharsets.ISO_8859_1);
+        String tags = text.replace("<?", "");
+        if (text.contains("<!") || text.contains("/>") || tags.indexOf('<') != tags.lastIndexOf('<')) {
+            return false;
+        }
+        Matcher encoding = ENCODING.matcher(text);
+        return !encoding.find() || "UTF-8".equals(encoding.group(1).toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Обновляет контрольную сумму тела файла и ищет в нём комментарии, секции CDATA
+     * и инструкции обработки ({@code <!} или {@code <?}): внутри значений атрибутов символ
+     * {@code <} не встречается, поэтому любое такое сочетание — разметка, которую нельзя
+     * резать по {@code <dog}. После найденной разметки контрольная сумма не досчитывается.
+     *
+     * @return {@code true}, если разметка найдена
+     */
+    private static boolean scanBody(FileChannel channel, long from, long to, CRC32 crc) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        byte[] bytes = window.array();
+        byte previous = 0; // последний байт предыдущего окна: разметка может прийтись на стык
+        for (long position = from; position < to; position += window.limit()) {
+            window.clear();
+            window.limit((int) Math.min(SCAN_WINDOW, to - position));
+            readFully(channel, window, position);
+            int length = window.limit();
+            if (length == 0) {
+                throw new IOException("Файл укорочен во время чтения");
+            }
+            if (previous == '<' && (bytes[0] == '!' || bytes[0] == '?')) {
+                return true;
+            }
+            for (int i = 0; i < length - 1; i++) {
+                if (bytes[i] == '<' && (bytes[i + 1] == '!' || bytes[i + 1] == '?')) {
+                    return true;
+                }
+            }
+            crc.update(bytes, 0, length);
+            previous = bytes[length - 1];
+        }
+        return false;
+    }
+
+    /**
+     * Обновляет контрольную сумму участком файла с {@code from} до {@code to}.
+     */
+    private static void update(CRC32 crc, FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        for (long position = from; position < to; position += window.limit()) {
+            window.clear();
+            window.limit((int) Math.min(SCAN_WINDOW, to - position));
+            readFully(channel, window, position);
+            if (window.limit() == 0) {
+                throw new IOException("Файл укорочен во время чтения");
+            }
+            crc.update(window.array(), 0, window.limit());
+        }
+    }
+
+    /**
+     * Ищет начало элемента {@code <dog} не раньше {@code from} и до {@code limit}.
+     *
+     * @return позиция начала элемента или -1, если его нет
+     */
+    private static long nextRecord(FileChannel channel, long from, long limit) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        long position = from;
+        while (position < limit) {
+            window.clear();
+            window.limit((int) Math.min(SCAN_WINDOW, limit - position));
+            readFully(channel, window, position);
+            // Последние байты окна проверяются в следующем окне, чтобы не пропустить тег на стыке
+            int last = window.limit() - DOG.length - 1;
+            for (int i = 0; i <= last; i++) {
+                if (isRecordStart(window, i)) {
+                    return position + i;
+                }
+            }
+            if (position + window.limit() >= limit) {
+                break;
+            }
+            position += Math.max(1, last + 1);
+        }
+        return -1;
+    }
+
+    private static boolean isRecordStart(ByteBuffer window, int i) {
+        for (int k = 0; k < DOG.length; k++) {
+            if (window.get(i + k) != DOG[k]) {
+                return false;
+            }
+        }
+        byte after = window.get(i + DOG.length);
+        return after == ' ' || after == '\t' || after == '\n' || after == '\r' || after == '/' || after == '>';
+    }
+
+    /**
+     * Ищет последний закрывающий тег файла — конец корневого элемента.
+     *
+     * @return его позиция или -1, если его нет в конце файла
+     */
+    private static long lastEndTag(FileChannel channel, long size) throws IOException {
+        int length = (int) Math.min(SCAN_WINDOW, size);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        readFully(channel, tail, size - length);
+        for (int i = length - 2; i >= 0; i--) {
+            if (tail.get(i) == '<' && tail.get(i + 1) == '/') {
+                return size - length + i;
+            }
+        }
+        return -1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Поток чтения из буфера, например из отображённого в память участка файла.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Кэш скомпилированных шаблонов отчётов.
+ * <p>
+ * Шаблон {@code .jrxml} загружается из classpath, а скомпилированный отчёт хранится
+ * под ключом — хешем SHA-256 содержимого шаблона: в памяти и в файле {@code .jasper}
+ * в каталоге кэша. Изменённый шаблон получает новый хеш и компилируется заново,
+ * а повторное формирование отчёта по тому же шаблону обходится без компиляции.
+ * <p>
+ * Файл {@code .jasper} — сериализованный объект, поэтому кэш хранится в личном каталоге
+ * пользователя ({@code ~/.dogshow/reports}), который создаётся с правами только для владельца.
+ * Файлы из каталога, принадлежащего другому пользователю или доступного на запись другим,
+ * не загружаются: отчёт компилируется заново и не сохраняется на диск.
+ */
+final class ReportCache {
+    private static final Logger log = Logger.getLogger(ReportCache.class);
+    /** Шаблон отчёта о выставке в classpath. */
+    static final String DOG_SHOW_REPORT = "DogShowReport.jrxml";
+    /** Каталог файлов {@code .jasper}; задаётся свойством {@code dogshow.reportCache}. */
+    private static final Path CACHE_DIRECTORY = Paths.get(System.getProperty("dogshow.reportCache",
+            Paths.get(System.getProperty("user.home"), ".dogshow", "reports").toString()));
+    /** Права каталога кэша и его файлов: доступ только владельцу. */
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+    private static final ConcurrentMap<String, JasperReport> COMPILED = new ConcurrentHashMap<>();
+
+    private ReportCache() {
+    }
+
+    /**
+     * Возвращает скомпилированный отчёт по шаблону из classpath.
+     *
+     * @param resource имя ресурса шаблона, например {@code DogShowReport.jrxml}
+     */
+    static JasperReport get(String resource) throws IOException, JRException {
+        byte[] template = readResource(resource);
+        String prefix = baseName(resource) + "-";
+        String key = prefix + sha256(template);
+        JasperReport report = COMPILED.get(key);
+        if (report != null) {
+            return report;
+        }
+        synchronized (ReportCache.class) {
+            report = COMPILED.get(key);
+            if (report == null) {
+                report = loadOrCompile(key, template);
+                // Отчёт по прежней версии шаблона больше не понадобится
+                COMPILED.keySet().removeIf(k -> k.startsWith(prefix));
+                COMPILED.put(key, report);
+            }
+            return report;
+        }
+    }
+
+    private static JasperReport loadOrCompile(String key, byte[] template) throws IOException, JRException {
+        boolean trusted = prepareDirectory();
+        Path compiled = CACHE_DIRECTORY.resolve(key + ".jasper");
+        if (trusted && Files.isRegularFile(compiled, LinkOption.NOFOLLOW_LINKS)) {
+            if (isPrivate(compiled)) {
+                long start = System.nanoTime();
+                try {
+                    JasperReport report = (JasperReport) JRLoader.loadObject(compiled.toFile());
+                    log.info("Отчёт " + key + " загружен из кэша за " + (System.nanoTime() - start) / 1_000_000 + " мс");
+                    return report;
+                } catch (JRException | ClassCastException e) {
+                    // Например, файл от другой версии JasperReports: компилируем заново
+                    log.warn("Не удалось прочитать скомпилированный отчёт " + compiled + ": " + e.getMessage());
+                }
+            } else {
+                log.warn("Скомпилированный отчёт " + compiled + " принадлежит другому пользователю"
+                        + " или доступен другим на запись, он будет заменён");
+            }
+        }
+
+        long start = System.nanoTime();
+        JasperReport report = JasperCompileManager.compileReport(new ByteArrayInputStream(template));
+        log.info("Отчёт " + key + " скомпилирован за " + (System.nanoTime() - start) / 1_000_000 + " мс");
+        if (!trusted) {
+            return report;
+        }
+        try {
+            AtomicFileWriter.write(compiled, channel -> {
+                try {
+                    JRSaver.saveObject(report, Channels.newOutputStream(channel));
+                } catch (JRException e) {
+                    throw new IOException(e);
+                }
+            });
+            PosixFileAttributeView view = Files.getFileAttributeView(compiled, PosixFileAttributeView.class);
+            if (view != null) {
+                view.setPermissions(OWNER_ONLY);
+            }
+        } catch (IOException e) {
+            // Без файла кэша отчёт всё равно работает, только компилируется при каждом запуске
+            log.warn("Не удалось сохранить скомпилированный отчёт " + compiled + ": " + e.getMessage());
+        }
+        return report;
+    }
+
+    /**
+     * Создаёт каталог кэша с правами только для владельца, если его ещё нет.
+     *
+     * @return {@code true}, если каталогу можно доверять: он принадлежит текущему
+     *         пользователю и недоступен на запись другим
+     */
+    private static boolean prepareDirectory() {
+        try {
+            if (!Files.isDirectory(CACHE_DIRECTORY)) {
+                if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                    Files.createDirectories(CACHE_DIRECTORY, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectories(CACHE_DIRECTORY);
+                }
+            }
+            if (isPrivate(CACHE_DIRECTORY)) {
+                return true;
+            }
+            log.warn("Каталог кэша отчётов " + CACHE_DIRECTORY + " принадлежит другому пользователю"
+                    + " или доступен другим на запись, кэш на диске не используется");
+        } catch (IOException e) {
+            log.warn("Каталог кэша отчётов " + CACHE_DIRECTORY + " недоступен: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет, что файл или каталог принадлежит текущему пользователю и, если файловая
+     * система поддерживает права POSIX, недоступен на запись группе и остальным.
+     * Если владельца определить не удалось, файлу не доверяем.
+     */
+    private static boolean isPrivate(Path path) {
+        try {
+            UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!user.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+                return false;
+            }
+            PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (view == null) {
+                return true;
+            }
+            Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+            return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Не удалось проверить владельца " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream in = ReportCache.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Шаблон отчёта не найден в classpath: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String baseName(String resource) {
+        String name = resource.substring(resource.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 обязателен для любой JVM
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Заполненный отчёт вместе с виртуализатором страниц, если он понадобился.
+ * <p>
+ * Отчёты от {@link #LARGE_REPORT_ROWS} записей заполняются с подкачкой: в памяти
+ * остаётся не более {@link #PAGES_IN_MEMORY} страниц, остальные выгружаются во временный
+ * файл и при экспорте подгружаются по одной. {@link #close()} удаляет файл подкачки.
+ */
+final class ReportFill implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(ReportFill.class);
+    /** Число записей, начиная с которого отчёт заполняется с подкачкой страниц. */
+    static final int LARGE_REPORT_ROWS = Integer.getInteger("dogshow.largeReportRows", 20_000);
+    /** Сколько заполненных страниц держать в памяти в режиме подкачки. */
+    private static final int PAGES_IN_MEMORY = 50;
+
+    private final JasperPrint print;
+    private final JRSwapFileVirtualizer virtualizer;
+
+    private ReportFill(JasperPrint print, JRSwapFileVirtualizer virtualizer) {
+        this.print = print;
+        this.virtualizer = virtualizer;
+    }
+
+    /**
+     * Заполняет отчёт; шаблон можно использовать из нескольких потоков одновременно.
+     *
+     * @param rowCount число записей в источнике данных
+     */
+    static ReportFill fill(JasperReport report, Map<String, Object> parameters,
+                           DogReportDataSource dataSource, int rowCount) throws JRException {
+        JRSwapFileVirtualizer virtualizer = null;
+        if (rowCount >= LARGE_REPORT_ROWS) {
+            JRSwapFile swapFile = new JRSwapFile(System.getProperty("java.io.tmpdir"), 4096, 64);
+            virtualizer = new JRSwapFileVirtualizer(PAGES_IN_MEMORY, swapFile, true);
+            parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            log.info("Отчёт по " + rowCount + " записям заполняется с подкачкой страниц");
+        }
+        try {
+            JasperPrint print = JasperFillManager.fillReport(report, parameters, dataSource);
+            if (virtualizer != null) {
+                // Экспорт только читает страницы: они подгружаются из файла по одной
+                virtualizer.setReadOnly(true);
+            }
+            return new ReportFill(print, virtualizer);
+        } catch (JRException | RuntimeException e) {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+            throw e;
+        }
+    }
+
+    JasperPrint print() {
+        return print;
+    }
+
+    @Override
+    public void close() {
+        if (virtualizer != null) {
+            virtualizer.cleanup(); // удаление файла подкачки
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import javax.swing.DefaultListSelectionModel;
+
+/**
+ * Модель выделения строк, позволяющая выделить набор строк одним событием.
+ * {@code DefaultListSelectionModel} оповещает слушателей при каждом вызове
+ * {@code addSelectionInterval}, что при тысячах совпадений вызывает тысячи перерисовок.
+ */
+class RowSelectionModel extends DefaultListSelectionModel {
+    private boolean batching;
+
+    /**
+     * Заменяет текущее выделение указанными строками.
+     *
+     * @param rows номера строк по возрастанию
+     */
+    public void setSelectedRows(int[] rows) {
+        int oldMin = getMinSelectionIndex();
+        int oldMax = getMaxSelectionIndex();
+        batching = true;
+        try {
+            clearSelection();
+            int i = 0;
+            while (i < rows.length) {
+                // Соседние строки выделяются одним интервалом
+                int start = rows[i];
+                int end = start;
+                while (i + 1 < rows.length && rows[i + 1] == end + 1) {
+                    end = rows[++i];
+                }
+                addSelectionInterval(start, end);
+                i++;
+            }
+        } finally {
+            batching = false;
+        }
+        int min = rows.length == 0 ? oldMin : (oldMin == -1 ? rows[0] : Math.min(oldMin, rows[0]));
+        int max = rows.length == 0 ? oldMax : Math.max(oldMax, rows[rows.length - 1]);
+        if (min != -1) {
+            fireValueChanged(min, max, getValueIsAdjusting());
+        }
+    }
+
+    @Override
+    protected void fireValueChanged(int firstIndex, int lastIndex, boolean isAdjusting) {
+        if (!batching) {
+            super.fireValueChanged(firstIndex, lastIndex, isAdjusting);
+        }
+    }
+}
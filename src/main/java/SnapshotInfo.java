@@ -0,0 +1,31 @@
+/**
+ * Сведения о файле снимка данных: размер и контрольная сумма CRC32 содержимого
+ * (для двоичного формата — содержимого после заголовка, см. {@link DogBinaryFormat}).
+ * По ним журнал изменений проверяет, что он относится именно к этому снимку.
+ */
+final class SnapshotInfo {
+    private final long size;
+    private final long checksum;
+
+    SnapshotInfo(long size, long checksum) {
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long checksum() {
+        return checksum;
+    }
+
+    boolean matches(long otherSize, long otherChecksum) {
+        return size == otherSize && checksum == otherChecksum;
+    }
+
+    @Override
+    public String toString() {
+        return size + " байт, CRC32 " + Long.toHexString(checksum);
+    }
+}
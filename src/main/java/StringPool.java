@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+ * Словарь строк: каждой различной строке сопоставляется целочисленный код.
+ * Повторяющиеся значения (порода, судья, владелец, награда) хранятся один раз,
+ * а в колонках хранятся только их коды.
+ * <p>
+ * Пополнять словарь может только один поток; чтение по коду безопасно из любого потока.
+ */
+class StringPool {
+    private static final int EMPTY = -1;
+
+    /** Значения по коду. Массив публикуется через volatile при каждом расширении. */
+    private volatile String[] values;
+    private volatile int size;
+    /** Хеш-таблица с открытой адресацией: хранит коды строк. */
+    private int[] table;
+    private int charCount;
+
+    public StringPool() {
+        this(64);
+    }
+
+    public StringPool(int expectedSize) {
+        values = new String[Math.max(16, expectedSize)];
+        table = new int[tableSizeFor(values.length)];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Возвращает код строки, добавляя её в словарь при необходимости.
+     */
+    public int intern(String value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        String[] current = values;
+        while (table[slot] != EMPTY) {
+            int code = table[slot];
+            if (current[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(value, slot);
+    }
+
+    /**
+     * Возвращает код строки из символов {@code chars[offset..offset+length)}, добавляя её
+     * в словарь при необходимости. Строка создаётся, только если такого значения ещё нет,
+     * поэтому разбор повторяющихся значений из буфера не создаёт новых объектов.
+     */
+    public int intern(char[] chars, int offset, int length) {
+        // Тот же хеш, что у String.hashCode(), чтобы искать в общей таблице
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        int mask = table.length - 1;
+        int slot = mix(h) & mask;
+        String[] current = values;
+        while (table[slot] != EMPTY) {
+            int code = table[slot];
+            if (contentEquals(current[code], chars, offset, length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(new String(chars, offset, length), slot);
+    }
+
+    private int insert(String value, int slot) {
+        String[] current = values;
+        int code = size;
+        if (code == current.length) {
+            current = Arrays.copyOf(current, code * 2);
+        }
+        current[code] = value;
+        values = current;
+        table[slot] = code;
+        charCount += value.length();
+        size = code + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Возвращает код строки или -1, если строки нет в словаре.
+     */
+    public int indexOf(String value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        String[] current = values;
+        while (table[slot] != EMPTY) {
+            int code = table[slot];
+            if (current[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает строку по коду.
+     */
+    public String get(int code) {
+        return values[code];
+    }
+
+    /**
+     * Количество различных строк в словаре.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Приблизительный объём памяти словаря в байтах
+     * (объекты строк, их символы, массив значений и хеш-таблица).
+     */
+    public long memoryFootprint() {
+        long strings = (long) size * (24 + 16) + 2L * charCount;
+        return strings + 16 + 4L * values.length + 16 + 4L * table.length;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, EMPTY);
+        int mask = newTable.length - 1;
+        String[] current = values;
+        for (int code = 0; code < size; code++) {
+            int slot = hash(current[code]) & mask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = code;
+        }
+        table = newTable;
+    }
+
+    private static boolean contentEquals(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String value) {
+        return mix(value.hashCode());
+    }
+
+    /**
+     * Перемешивает биты хеша строки: у значений вида «Собака123», «Собака124» хеши
+     * идут подряд, и без перемешивания они занимали бы длинные цепочки соседних ячеек.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity * 2 - 1);
+        return Math.max(32, n * 2);
+    }
+}
@@ -0,0 +1,275 @@
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Планировщик фоновых задач приложения.
+ * <p>
+ * Задачи ввода-вывода (загрузка, сохранение) выполняются в виртуальных потоках, если их
+ * поддерживает JVM, иначе — в ограниченном пуле; вычислительные задачи (отчёты) —
+ * в пуле по числу ядер. Каждая задача получает отменяемый {@link Future} и может сообщать
+ * о ходе выполнения; слушатели состояния уведомляются в EDT. Повторный запуск задачи
+ * с тем же ключом, пока прежняя не завершилась, возвращает уже выполняющуюся задачу.
+ */
+final class TaskScheduler {
+    private static final Logger log = Logger.getLogger(TaskScheduler.class);
+    /** Размер пула ввода-вывода, если виртуальные потоки недоступны. */
+    private static final int IO_THREADS = 8;
+
+    /**
+     * Вид задачи: определяет пул, в котором она выполняется.
+     */
+    enum Kind {
+        IO, CPU
+    }
+
+    /**
+     * Фоновая задача.
+     */
+    interface Task<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /**
+     * Ход выполнения задачи; методы можно вызывать из любого потока.
+     */
+    interface Progress {
+        /**
+         * @param percent процент выполнения от 0 до 100 или -1, если он неизвестен
+         * @param note    краткое описание текущего шага
+         */
+        void update(int percent, String note);
+    }
+
+    /**
+     * Слушатель состояния задач; вызывается в EDT.
+     */
+    interface StatusListener {
+        /**
+         * @param running выполняющиеся задачи в порядке запуска
+         */
+        void tasksChanged(List<TaskStatus> running);
+
+        void taskFailed(String title, Exception error);
+    }
+
+    /**
+     * Снимок состояния выполняющейся задачи.
+     */
+    static final class TaskStatus {
+        final String title;
+        final int percent;
+        final String note;
+        final Future<?> future;
+
+        TaskStatus(String title, int percent, String note, Future<?> future) {
+            this.title = title;
+            this.percent = percent;
+            this.note = note;
+            this.future = future;
+        }
+    }
+
+    private final ExecutorService ioExecutor = createIoExecutor();
+    private final ExecutorService cpuExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), daemonThreads("cpu"));
+    private final List<ManagedTask<?>> running = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, ManagedTask<?>> byKey = new ConcurrentHashMap<>();
+    private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    /**
+     * Запускает задачу.
+     *
+     * @param key       ключ для отсеивания повторных запусков или {@code null}
+     * @param title     название задачи для строки состояния
+     * @param onSuccess вызывается в EDT с результатом задачи; может быть {@code null}
+     * @param onFailure вызывается в EDT при ошибке (но не при отмене); может быть {@code null}
+     * @return выполняющаяся задача, в том числе ранее запущенная с тем же ключом
+     */
+    <T> Future<T> submit(String key, String title, Kind kind, Task<T> task,
+                         Consumer<? super T> onSuccess, Consumer<Exception> onFailure) {
+        ManagedTask<T> managed = new ManagedTask<>(key, title, new TaskProgress(), task, onSuccess, onFailure);
+        if (key != null) {
+            ManagedTask<?> existing = byKey.putIfAbsent(key, managed);
+            if (existing != null) {
+                log.info("Задача «" + existing.title + "» уже выполняется, повторный запуск пропущен");
+                @SuppressWarnings("unchecked")
+                Future<T> duplicate = (Future<T>) existing;
+                return duplicate;
+            }
+        }
+        running.add(managed);
+        scheduleRefresh();
+        (kind == Kind.IO ? ioExecutor : cpuExecutor).execute(managed);
+        return managed;
+    }
+
+    /**
+     * Пул вычислительных задач, например для заполнения отчётов группами.
+     * Задачи, ожидающие результатов из этого пула, следует запускать как {@link Kind#IO}.
+     */
+    Executor cpuExecutor() {
+        return cpuExecutor;
+    }
+
+    /**
+     * Пул задач ввода-вывода для коротких фоновых чтений, которым не нужна строка состояния,
+     * например для подгрузки страниц архива при прокрутке.
+     */
+    Executor ioExecutor() {
+        return ioExecutor;
+    }
+
+    void addStatusListener(StatusListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Отменяет все задачи и останавливает пулы.
+     */
+    void shutdown() {
+        for (ManagedTask<?> task : running) {
+            task.cancel(true);
+        }
+        ioExecutor.shutdownNow();
+        cpuExecutor.shutdownNow();
+    }
+
+    /**
+     * Обновляет строку состояния не чаще, чем EDT успевает обработать изменения.
+     */
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                refreshScheduled.set(false);
+                List<TaskStatus> statuses = new ArrayList<>(running.size());
+                for (ManagedTask<?> task : running) {
+                    statuses.add(new TaskStatus(task.title, task.progress.percent, task.progress.note, task));
+                }
+                for (StatusListener listener : listeners) {
+                    listener.tasksChanged(statuses);
+                }
+            });
+        }
+    }
+
+    /**
+     * Виртуальные потоки (Java 21+) подключаются через отражение, чтобы код собирался
+     * и под Java 8; на старых JVM используется ограниченный пул обычных потоков.
+     */
+    private static ExecutorService createIoExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("Задачи ввода-вывода выполняются в виртуальных потоках");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), daemonThreads("io"));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Фабрика фоновых (daemon) потоков с нумерованными именами.
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Ход выполнения задачи, который она сообщает из своего потока.
+     */
+    private final class TaskProgress implements Progress {
+        volatile int percent = -1;
+        volatile String note = "";
+
+        @Override
+        public void update(int percent, String note) {
+            this.percent = percent;
+            this.note = note;
+            scheduleRefresh();
+        }
+    }
+
+    /**
+     * Задача с состоянием хода выполнения и обработчиками завершения.
+     */
+    private final class ManagedTask<T> extends FutureTask<T> {
+        private final String key;
+        private final String title;
+        private final TaskProgress progress;
+        private final Consumer<? super T> onSuccess;
+        private final Consumer<Exception> onFailure;
+
+        ManagedTask(String key, String title, TaskProgress progress, Task<T> task,
+                    Consumer<? super T> onSuccess, Consumer<Exception> onFailure) {
+            super(() -> task.run(progress));
+            this.key = key;
+            this.title = title;
+            this.progress = progress;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        protected void done() {
+            running.remove(this);
+            if (key != null) {
+                byKey.remove(key, this);
+            }
+            scheduleRefresh();
+            T result;
+            try {
+                result = get();
+            } catch (CancellationException e) {
+                log.info("Задача «" + title + "» отменена");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                Exception error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                log.error("Ошибка в задаче «" + title + "»: " + error.getMessage(), error);
+                SwingUtilities.invokeLater(() -> {
+                    for (StatusListener listener : listeners) {
+                        listener.taskFailed(title, error);
+                    }
+                    if (onFailure != null) {
+                        onFailure.accept(error);
+                    }
+                });
+                return;
+            }
+            if (onSuccess != null) {
+                SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Строка состояния фоновых задач: название и ход последней запущенной задачи,
+ * число остальных и кнопка её отмены.
+ */
+class TaskStatusBar extends JPanel implements TaskScheduler.StatusListener {
+    private final JLabel label = new JLabel("Готово");
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton cancelButton = new JButton("Отмена");
+    private Future<?> current;
+
+    public TaskStatusBar() {
+        super(new BorderLayout(8, 0));
+        setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        controls.add(progressBar);
+        controls.add(cancelButton);
+        add(label, BorderLayout.CENTER);
+        add(controls, BorderLayout.EAST);
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(e -> {
+            if (current != null) {
+                current.cancel(true);
+            }
+        });
+    }
+
+    @Override
+    public void tasksChanged(List<TaskScheduler.TaskStatus> running) {
+        if (running.isEmpty()) {
+            current = null;
+            label.setText("Готово");
+            progressBar.setVisible(false);
+            cancelButton.setVisible(false);
+            return;
+        }
+        TaskScheduler.TaskStatus latest = running.get(running.size() - 1);
+        current = latest.future;
+        StringBuilder text = new StringBuilder(latest.title);
+        if (!latest.note.isEmpty()) {
+            text.append(": ").append(latest.note);
+        }
+        if (running.size() > 1) {
+            text.append(" (ещё задач: ").append(running.size() - 1).append(')');
+        }
+        label.setText(text.toString());
+        progressBar.setIndeterminate(latest.percent < 0);
+        progressBar.setValue(Math.max(0, latest.percent));
+        progressBar.setVisible(true);
+        cancelButton.setVisible(true);
+    }
+
+    @Override
+    public void taskFailed(String title, Exception error) {
+        label.setText("Ошибка: " + title + ": " + error.getMessage());
+    }
+}
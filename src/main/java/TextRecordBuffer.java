@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+/**
+ * Переиспользуемые буферы значений одной записи для текстовых разборщиков:
+ * символы каждого поля накапливаются в своём массиве, который после записи
+ * очищается, но не пересоздаётся. Запись добавляется в порцию через
+ * {@link DogBatch#add(char[][], int[])}.
+ */
+final class TextRecordBuffer {
+    private char[][] values;
+    private int[] lengths;
+
+    TextRecordBuffer(int fields) {
+        values = new char[fields][64];
+        lengths = new int[fields];
+    }
+
+    /**
+     * Дописывает символ к значению поля, при необходимости добавляя поля.
+     */
+    void append(int field, char c) {
+        if (field >= values.length) {
+            int oldCount = values.length;
+            values = Arrays.copyOf(values, Math.max(field + 1, oldCount * 2));
+            lengths = Arrays.copyOf(lengths, values.length);
+            for (int i = oldCount; i < values.length; i++) {
+                values[i] = new char[64];
+            }
+        }
+        char[] value = values[field];
+        int length = lengths[field];
+        if (length == value.length) {
+            value = Arrays.copyOf(value, length * 2);
+            values[field] = value;
+        }
+        value[length] = c;
+        lengths[field] = length + 1;
+    }
+
+    /**
+     * Очищает значение поля.
+     */
+    void clear(int field) {
+        if (field < lengths.length) {
+            lengths[field] = 0;
+        }
+    }
+
+    /**
+     * Очищает все поля.
+     */
+    void clear() {
+        Arrays.fill(lengths, 0);
+    }
+
+    /**
+     * Символы значения поля; действительны первые {@link #length} из них.
+     */
+    char[] value(int field) {
+        return field < values.length ? values[field] : values[0];
+    }
+
+    /**
+     * Длина значения поля; у поля, которого не было в записи, — 0.
+     */
+    int length(int field) {
+        return field >= 0 && field < lengths.length ? lengths[field] : 0;
+    }
+
+    /**
+     * Значение поля строкой, например для заголовка или сообщения об ошибке.
+     */
+    String toString(int field) {
+        return new String(value(field), 0, length(field));
+    }
+
+    /**
+     * Массивы значений по номерам полей — для {@link DogBatch#add(char[][], int[])}.
+     */
+    char[][] values() {
+        return values;
+    }
+
+    int[] lengths() {
+        return lengths;
+    }
+}
@@ -0,0 +1,110 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Чтение и запись CSV: кавычки, разделители внутри значений, переводы строк,
+ * метка порядка байтов и заголовки с другим порядком или набором колонок.
+ */
+public class DogCsvFormatTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("dogshow", DogCsvFormat.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void roundTripKeepsSpecialCharacters() throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        store.add(new String[]{"Рекс, младший", "Овчарка \"немецкая\"", "Иванов;Петров", "Сидоров\tА.", "Золото"});
+        store.add(new String[]{"Бим\r\nвторая строка", "\"", "", " пробелы ", "Серебро\n"});
+        store.add(new String[]{"", "", "", "", ""});
+
+        SnapshotInfo saved = DogCsvFormat.save(store, file);
+        DogRecordStore loaded = new DogRecordStore();
+        SnapshotInfo read = DogCsvFormat.read(file, loaded::addAll);
+
+        assertEquals(Files.size(file), saved.size());
+        assertEquals(saved.checksum(), read.checksum());
+        assertEquals(store.size(), loaded.size());
+        for (int row = 0; row < store.size(); row++) {
+            assertArrayEquals(store.getRow(row), loaded.getRow(row));
+        }
+    }
+
+    @Test
+    public void writesHeaderAndCrlf() throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        store.add(new String[]{"Рекс", "Овчарка", "Иванов", "Петров", "Золото"});
+        DogCsvFormat.save(store, file);
+        assertEquals("name,breed,owner,judge,award\r\nРекс,Овчарка,Иванов,Петров,Золото\r\n",
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void headerWithReorderedAndMissingColumns() throws Exception {
+        write("\uFEFFowner;Name;extra;award\r\n"
+                + "Иванов;Рекс;лишнее;Золото\r\n"
+                + "\"Петров; мл.\";Бим\r\n");
+        DogRecordStore loaded = read();
+        assertEquals(2, loaded.size());
+        assertArrayEquals(new String[]{"Рекс", "", "Иванов", "", "Золото"}, loaded.getRow(0));
+        assertArrayEquals(new String[]{"Бим", "", "Петров; мл.", "", ""}, loaded.getRow(1));
+    }
+
+    @Test
+    public void headerWithTableTitles() throws Exception {
+        String[] titles = DogRecordStore.columnTitles();
+        write(titles[DogRecordStore.BREED] + "\t" + titles[DogRecordStore.NAME] + "\nСеттер\tБим\n");
+        DogRecordStore loaded = read();
+        assertEquals(1, loaded.size());
+        assertArrayEquals(new String[]{"Бим", "Сеттер", "", "", ""}, loaded.getRow(0));
+    }
+
+    @Test
+    public void withoutHeaderFieldsAreTakenInOrder() throws Exception {
+        write("<Рекс>,{Овчарка},Иванов,Петров,Золото\n\n\"Бим\",Сеттер,,,\n");
+        DogRecordStore loaded = read();
+        assertEquals(2, loaded.size());
+        assertArrayEquals(new String[]{"<Рекс>", "{Овчарка}", "Иванов", "Петров", "Золото"}, loaded.getRow(0));
+        assertArrayEquals(new String[]{"Бим", "Сеттер", "", "", ""}, loaded.getRow(1));
+        // Содержимое не принимается за XML или NDJSON, если у файла расширение CSV
+        assertEquals(DogSnapshotFormat.CSV, DogSnapshotFormat.of(file));
+    }
+
+    @Test
+    public void unclosedQuoteIsReported() throws Exception {
+        write("name,breed\n\"Рекс,Овчарка\n");
+        try {
+            read();
+            fail("ожидалась ошибка разбора");
+        } catch (IOException expected) {
+            // Незакрытые кавычки
+        }
+    }
+
+    private void write(String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DogRecordStore read() throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        DogCsvFormat.read(file, store::addAll);
+        return store;
+    }
+}
@@ -0,0 +1,166 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Журнал изменений: сохранённые правки применяются при повторной загрузке,
+ * несохранённые отбрасываются, а простой просмотр файла не создаёт журнал.
+ */
+public class DogJournalTest {
+    private static final String[] REX = {"Рекс", "Овчарка", "Иванов", "Петров", "Золото"};
+    private static final String[] BIM = {"Бим", "Сеттер", "Сидоров", "Петров", "Серебро"};
+    private static final String[] JACK = {"Джек", "Терьер", "Кузнецов", "Смирнов", "Бронза"};
+
+    private Path directory;
+    private Path snapshot;
+    private SnapshotInfo snapshotInfo;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("dogjournal");
+        snapshot = directory.resolve("show.xml");
+        DogRecordStore store = new DogRecordStore();
+        store.add(REX);
+        store.add(BIM);
+        snapshotInfo = DogSnapshotFormat.forSave(snapshot).save(store, snapshot);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void openDoesNotCreateJournal() throws Exception {
+        DogTableModel model = load();
+        DogJournal journal = DogJournal.open(snapshot, snapshotInfo);
+        journal.attach(model);
+        model.setValueAt("Бронза", 0, DogRecordStore.AWARD);
+        journal.detach();
+        journal.close();
+
+        assertFalse("журнал создан без сохранения", Files.exists(DogJournal.journalPath(snapshot)));
+    }
+
+    @Test
+    public void savedEditsAreReplayedAndUnsavedDiscarded() throws Exception {
+        DogTableModel model = load();
+        DogJournal journal = DogJournal.open(snapshot, snapshotInfo);
+        assertTrue(journal.recoveredOperations().isEmpty());
+        journal.attach(model);
+
+        // Сохранённые правки
+        model.setValueAt("Бронза", 0, DogRecordStore.AWARD);
+        model.addRow(JACK);
+        model.setColumnValue(new int[]{1, 2}, DogRecordStore.JUDGE, "Орлов");
+        journal.commit().await();
+        assertTrue(Files.exists(DogJournal.journalPath(snapshot)));
+
+        // Закрытие без сохранения
+        model.removeRow(0);
+        model.setValueAt("Белка", 0, DogRecordStore.NAME);
+        journal.detach();
+        journal.close();
+
+        DogTableModel reloaded = load();
+        DogJournal reopened = DogJournal.open(snapshot, snapshotInfo);
+        for (DogJournal.Operation operation : reopened.recoveredOperations()) {
+            operation.apply(reloaded);
+        }
+        reopened.close();
+
+        assertEquals(3, reloaded.getRowCount());
+        assertArrayEquals(new String[]{"Рекс", "Овчарка", "Иванов", "Петров", "Бронза"}, reloaded.getRow(0));
+        assertArrayEquals(new String[]{"Бим", "Сеттер", "Сидоров", "Орлов", "Серебро"}, reloaded.getRow(1));
+        assertArrayEquals(new String[]{"Джек", "Терьер", "Кузнецов", "Орлов", "Бронза"}, reloaded.getRow(2));
+    }
+
+    @Test
+    public void laterSessionAppendsToSavedJournal() throws Exception {
+        DogTableModel model = load();
+        DogJournal journal = DogJournal.open(snapshot, snapshotInfo);
+        journal.attach(model);
+        model.addRow(JACK);
+        journal.commit().await();
+        journal.detach();
+        journal.close();
+
+        DogTableModel second = load();
+        DogJournal reopened = DogJournal.open(snapshot, snapshotInfo);
+        for (DogJournal.Operation operation : reopened.recoveredOperations()) {
+            operation.apply(second);
+        }
+        reopened.attach(second);
+        second.removeRow(1);
+        reopened.commit().await();
+        reopened.detach();
+        reopened.close();
+
+        assertEquals(2, DogJournal.committedOperations(snapshot, snapshotInfo).size());
+        DogTableModel third = load();
+        for (DogJournal.Operation operation : DogJournal.committedOperations(snapshot, snapshotInfo)) {
+            operation.apply(third);
+        }
+        assertEquals(2, third.getRowCount());
+        assertArrayEquals(REX, third.getRow(0));
+        assertArrayEquals(JACK, third.getRow(1));
+    }
+
+    @Test
+    public void failedJournalIsReplacedBySnapshotOnNextSave() throws Exception {
+        DogTableModel model = load();
+        DogJournal journal = DogJournal.open(snapshot, snapshotInfo);
+        journal.attach(model);
+        model.setValueAt("Бронза", 0, DogRecordStore.AWARD);
+        // Каталог на месте файла журнала: запись в журнал не удастся
+        Files.createDirectory(DogJournal.journalPath(snapshot));
+        try {
+            journal.commit().await();
+            fail("ожидалась ошибка записи журнала");
+        } catch (IOException expected) {
+            assertTrue(journal.failed());
+        }
+        model.addRow(JACK);
+        Files.delete(DogJournal.journalPath(snapshot));
+        journal.detach();
+        journal.close();
+
+        // Следующее сохранение записывает полный снимок
+        DogJournal replacement = DogJournal.create(snapshot, model);
+        replacement.commit().await();
+        assertFalse(replacement.failed());
+        replacement.detach();
+        replacement.close();
+
+        DogTableModel reloaded = new DogTableModel(DogRecordStore.columnTitles());
+        SnapshotInfo saved = DogSnapshotFormat.of(snapshot).read(snapshot,
+                batch -> reloaded.addBatches(Collections.singletonList(batch)));
+        for (DogJournal.Operation operation : DogJournal.committedOperations(snapshot, saved)) {
+            operation.apply(reloaded);
+        }
+        assertEquals(3, reloaded.getRowCount());
+        assertArrayEquals(new String[]{"Рекс", "Овчарка", "Иванов", "Петров", "Бронза"}, reloaded.getRow(0));
+        assertArrayEquals(JACK, reloaded.getRow(2));
+    }
+
+    private DogTableModel load() throws Exception {
+        DogTableModel model = new DogTableModel(DogRecordStore.columnTitles());
+        DogSnapshotFormat.of(snapshot).read(snapshot, batch -> model.addBatches(Collections.singletonList(batch)));
+        return model;
+    }
+}
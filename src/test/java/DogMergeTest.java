@@ -0,0 +1,163 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Слияние файлов: повторы и конфликты внутри файла, между файлами и с загруженными
+ * записями при обеих политиках, а также рост индекса.
+ */
+public class DogMergeTest {
+    private static final String[] REX = {"Рекс", "Овчарка", "Иванов", "Петров", "Золото"};
+    private static final String[] REX_BRONZE = {"Рекс", "Овчарка", "Иванов", "Петров", "Бронза"};
+    private static final String[] REX_SILVER = {"Рекс", "Овчарка", "Иванов", "Орлов", "Серебро"};
+    private static final String[] BIM = {"Бим", "Сеттер", "Сидоров", "Петров", "Серебро"};
+    private static final String[] JACK = {"Джек", "Терьер", "Кузнецов", "Смирнов", "Бронза"};
+    private static final String[] JACK_GOLD = {"Джек", "Терьер", "Кузнецов", "Смирнов", "Золото"};
+
+    @Test
+    public void duplicatesAreSkippedWithinAndBetweenFiles() {
+        DogRecordStore base = store(REX);
+        List<DogMerge.Source> sources = Arrays.asList(
+                source("a.xml", BIM, REX, BIM),
+                source("b.xml", JACK, BIM, REX));
+
+        DogMerge.Result result = DogMerge.merge(base, sources, DogMerge.DEFAULT_KEY, DogMerge.Policy.KEEP_EXISTING);
+
+        assertEquals(6, result.readCount());
+        assertEquals(2, result.addedCount());
+        assertEquals(4, result.duplicateCount());
+        assertTrue(result.conflicts.isEmpty());
+        assertEquals(0, result.replacedCount());
+        assertRows(apply(base, result), REX, BIM, JACK);
+    }
+
+    @Test
+    public void keepExistingReportsConflictsAndKeepsFirstValues() {
+        DogRecordStore base = store(REX);
+        List<DogMerge.Source> sources = Arrays.asList(
+                source("a.xml", REX_BRONZE, JACK),
+                source("b.xml", JACK_GOLD));
+
+        DogMerge.Result result = DogMerge.merge(base, sources, DogMerge.DEFAULT_KEY, DogMerge.Policy.KEEP_EXISTING);
+
+        assertEquals(1, result.addedCount());
+        assertEquals(2, result.conflicts.size());
+        DogMerge.Conflict loaded = result.conflicts.get(0);
+        assertEquals(Paths.get("a.xml"), loaded.path);
+        assertEquals(1, loaded.record);
+        assertEquals(0, loaded.row);
+        assertArrayEquals(REX, loaded.existing);
+        assertArrayEquals(REX_BRONZE, loaded.incoming);
+        assertFalse(loaded.replaced);
+        DogMerge.Conflict fromFile = result.conflicts.get(1);
+        assertEquals(-1, fromFile.row);
+        assertArrayEquals(JACK, fromFile.existing);
+        assertRows(apply(base, result), REX, JACK);
+    }
+
+    @Test
+    public void replaceTakesLastValues() {
+        DogRecordStore base = store(REX, BIM);
+        List<DogMerge.Source> sources = Arrays.asList(
+                source("a.xml", REX_BRONZE, JACK),
+                source("b.xml", REX_SILVER, JACK_GOLD, JACK_GOLD));
+
+        DogMerge.Result result = DogMerge.merge(base, sources, DogMerge.DEFAULT_KEY, DogMerge.Policy.REPLACE);
+
+        assertEquals(1, result.addedCount());
+        assertEquals(1, result.replacedCount());
+        assertEquals(3, result.conflicts.size());
+        assertTrue(result.conflicts.get(0).replaced);
+        // Второй конфликт сравнивается уже с заменёнными значениями
+        assertArrayEquals(REX_BRONZE, result.conflicts.get(1).existing);
+        assertEquals(1, result.duplicateCount());
+        // Исходное хранилище изменяется только при применении результата
+        assertArrayEquals(REX, base.getRow(0));
+        assertRows(apply(base, result), REX_SILVER, BIM, JACK_GOLD);
+    }
+
+    @Test
+    public void keyColumnsDecideWhatIsDuplicate() {
+        DogRecordStore base = store(REX);
+        int[] nameOnly = {DogRecordStore.NAME};
+        DogMerge.Result result = DogMerge.merge(base,
+                Collections.singletonList(source("a.xml", new String[]{"Рекс", "Терьер", "", "", ""})),
+                nameOnly, DogMerge.Policy.KEEP_EXISTING);
+        assertEquals(0, result.addedCount());
+        assertEquals(1, result.conflicts.size());
+    }
+
+    @Test
+    public void duplicatesAmongLoadedRowsAreLeftAlone() {
+        DogRecordStore base = store(REX, REX);
+        DogMerge.Result result = DogMerge.merge(base, Collections.singletonList(source("a.xml", REX)),
+                DogMerge.DEFAULT_KEY, DogMerge.Policy.REPLACE);
+        assertEquals(0, result.addedCount());
+        assertEquals(1, result.duplicateCount());
+        assertRows(apply(base, result), REX, REX);
+    }
+
+    @Test
+    public void indexGrowsPastInitialCapacity() {
+        int count = 5000;
+        DogRecordStore base = new DogRecordStore();
+        DogBatch first = new DogBatch(count);
+        DogBatch second = new DogBatch(count);
+        for (int i = 0; i < count; i++) {
+            base.add(new String[]{"Загружен " + i, "Порода " + i % 7, "Владелец", "", ""});
+            first.add("Собака " + i, "Порода " + i % 7, "Владелец " + i % 13, "", "");
+            // Каждая вторая запись повторяет запись из первого файла, остальные — с новой кличкой
+            second.add(i % 2 == 0 ? "Собака " + i : "Другая " + i, "Порода " + i % 7, "Владелец " + i % 13, "", "");
+        }
+        List<DogMerge.Source> sources = Arrays.asList(
+                new DogMerge.Source(Paths.get("a.xml"), Collections.singletonList(first)),
+                new DogMerge.Source(Paths.get("b.xml"), Collections.singletonList(second)));
+
+        DogMerge.Result result = DogMerge.merge(base, sources, DogMerge.DEFAULT_KEY, DogMerge.Policy.KEEP_EXISTING);
+
+        assertEquals(count + count / 2, result.addedCount());
+        assertEquals(count / 2, result.duplicateCount());
+        assertTrue(result.conflicts.isEmpty());
+        DogRecordStore merged = apply(base, result);
+        assertEquals(count * 5 / 2, merged.size());
+        assertEquals("Другая 1", merged.get(2 * count, DogRecordStore.NAME));
+    }
+
+    private static DogRecordStore store(String[]... rows) {
+        DogRecordStore store = new DogRecordStore();
+        for (String[] row : rows) {
+            store.add(row);
+        }
+        return store;
+    }
+
+    private static DogMerge.Source source(String name, String[]... rows) {
+        DogBatch batch = new DogBatch(rows.length);
+        for (String[] row : rows) {
+            batch.add(row[0], row[1], row[2], row[3], row[4]);
+        }
+        Path path = Paths.get(name);
+        return new DogMerge.Source(path, Collections.singletonList(batch));
+    }
+
+    private static DogRecordStore apply(DogRecordStore base, DogMerge.Result result) {
+        result.apply(base);
+        return base;
+    }
+
+    private static void assertRows(DogRecordStore store, String[]... rows) {
+        assertEquals(rows.length, store.size());
+        for (int row = 0; row < rows.length; row++) {
+            assertArrayEquals(rows[row], store.getRow(row));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Чтение и запись NDJSON: экранирование, суррогатные пары в escape-последовательностях,
+ * {@code null}, пропуск вложенных значений и ошибки разбора.
+ */
+public class DogNdjsonFormatTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("dogshow", ".ndjson");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void roundTripKeepsEscapedCharacters() throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        store.add(new String[]{"Рекс \"младший\"", "C:\\псы\\", "строка\nвторая\r", "таб\tи\u0001", "\uD83D\uDC36"});
+        store.add(new String[]{"", "/", "{}", "[1]", "null"});
+
+        SnapshotInfo saved = DogNdjsonFormat.save(store, file);
+        DogRecordStore loaded = new DogRecordStore();
+        SnapshotInfo read = DogNdjsonFormat.read(file, loaded::addAll);
+
+        assertEquals(saved.checksum(), read.checksum());
+        assertEquals(store.size(), loaded.size());
+        for (int row = 0; row < store.size(); row++) {
+            assertArrayEquals(store.getRow(row), loaded.getRow(row));
+        }
+        assertEquals(store.size(), Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void readsEscapesNullsAndSkipsNestedValues() throws Exception {
+        write("{\"breed\":\"\\u0421\\u0435\\u0442\\u0442\\u0435\\u0440\", \"name\" : \"\\ud83d\\udc36 \\\"Бим\\\"\\/\","
+                + " \"owner\":null, \"extra\":{\"a\":[1,{\"b\":\"}]\"}],\"c\":null},"
+                + " \"judge\":42, \"award\":true, \"list\":[[],{}]}\n"
+                + "\n"
+                + "  {\"name\":\"Рекс\",\"name\":\"Рекс II\"} {}\r\n");
+        DogRecordStore loaded = read();
+        assertEquals(3, loaded.size());
+        assertArrayEquals(new String[]{"\uD83D\uDC36 \"Бим\"/", "Сеттер", "", "42", "true"}, loaded.getRow(0));
+        assertArrayEquals(new String[]{"Рекс II", "", "", "", ""}, loaded.getRow(1));
+        assertArrayEquals(new String[]{"", "", "", "", ""}, loaded.getRow(2));
+    }
+
+    @Test
+    public void nestedValueOfKnownFieldIsReported() throws Exception {
+        assertMalformed("{\"name\":{\"first\":\"Рекс\"}}\n");
+    }
+
+    @Test
+    public void malformedInputIsReported() throws Exception {
+        assertMalformed("{\"name\":\"Рекс}\n");
+        assertMalformed("{\"name\":\"\\x\"}\n");
+        assertMalformed("{\"name\":\"\\u12G4\"}\n");
+        assertMalformed("[\"Рекс\"]\n");
+        assertMalformed("{\"name\" \"Рекс\"}\n");
+        assertMalformed("{\"extra\":[1, 2\n");
+    }
+
+    private void assertMalformed(String text) throws Exception {
+        write(text);
+        try {
+            read();
+            fail("ожидалась ошибка разбора: " + text);
+        } catch (IOException expected) {
+            // Сообщение содержит номер строки и путь файла
+        }
+    }
+
+    private void write(String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DogRecordStore read() throws Exception {
+        DogRecordStore store = new DogRecordStore();
+        DogNdjsonFormat.read(file, store::addAll);
+        return store;
+    }
+}
@@ -0,0 +1,77 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Параллельный разбор XML: файлы, которые нельзя делить по {@code <dog}, читаются последовательно.
+ */
+public class ParallelDogXmlReaderTest {
+    private static final String HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<doglist>\n";
+    private static final String REX = "    <dog name=\"Рекс\" breed=\"Овчарка\" owner=\"Иванов\" judge=\"Петров\" award=\"Золото\"/>\n";
+    private static final String BIM = "    <dog name=\"Бим\" breed=\"Сеттер\" owner=\"Сидоров\" judge=\"Петров\" award=\"Серебро\"/>\n";
+    private static final String TAIL = "</doglist>\n";
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("parallel", ".xml");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void plainFileIsReadInParallel() throws Exception {
+        write(HEAD + REX + BIM + TAIL);
+        List<DogBatch> batches = new ArrayList<>();
+        assertNotNull(ParallelDogXmlReader.read(file, batches::add));
+        assertEquals(2, rows(batches));
+    }
+
+    @Test
+    public void commentWithRecordFallsBackToSequential() throws Exception {
+        assertSequential(HEAD + REX + "    <!-- <dog name=\"Старый\"/> -->\n" + BIM + TAIL);
+    }
+
+    @Test
+    public void cdataAndProcessingInstructionFallBackToSequential() throws Exception {
+        assertSequential(HEAD + REX + "    <![CDATA[ <dog ]]>\n" + BIM + TAIL);
+        assertSequential(HEAD + REX + "    <?note <dog ?>\n" + BIM + TAIL);
+    }
+
+    private void assertSequential(String xml) throws Exception {
+        write(xml);
+        List<DogBatch> batches = new ArrayList<>();
+        assertNull(ParallelDogXmlReader.read(file, batches::add));
+        assertEquals("порции переданы до отказа от параллельного разбора", 0, batches.size());
+        batches.clear();
+        DogSnapshotFormat.XML.read(file, batches::add);
+        assertEquals(2, rows(batches));
+    }
+
+    private void write(String xml) throws IOException {
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int rows(List<DogBatch> batches) {
+        int rows = 0;
+        for (DogBatch batch : batches) {
+            rows += batch.size();
+        }
+        return rows;
+    }
+}